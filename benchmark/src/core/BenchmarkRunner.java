@@ -0,0 +1,45 @@
+package core;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler attached, so every result comes with its allocation
+ * rate (gc.alloc.rate.norm is bytes per operation), and stores the results as JSON in results/
+ * named after the start time, so runs can be compared with each other later.
+ *
+ * Usage: java -jar target/benchmarks.jar [JMH options]
+ * All JMH command line options are accepted, e.g. a benchmark regexp, -f, -wi, -i or -rff.
+ */
+public class BenchmarkRunner {
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+
+    boolean gcProfilerRequested = commandLine.getProfilers().stream()
+      .anyMatch(profiler -> profiler.getKlass().equals("gc") || profiler.getKlass().equals(GCProfiler.class.getName()));
+    if (!gcProfilerRequested)
+      options.addProfiler(GCProfiler.class);
+
+    if (!commandLine.getResult().hasValue()) {
+      Path results = Paths.get("results");
+      Files.createDirectories(results);
+      String name = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH-mm-ss")) + ".json";
+      options.result(results.resolve(name).toString());
+    }
+    if (!commandLine.getResultFormat().hasValue())
+      options.resultFormat(ResultFormatType.JSON);
+
+    new Runner(options.build()).run();
+  }
+}
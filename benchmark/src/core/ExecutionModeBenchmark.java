@@ -0,0 +1,126 @@
+package core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static core.HttpStatusCode.OK;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Compares the fixed thread pool with virtual threads under many concurrent keep-alive connections
+ * served by a blocking handler. Every client connection sends its requests one after another,
+ * the latency of each request is recorded and the connection is closed after its last response.
+ *
+ * Usage: java -cp target/benchmarks.jar core.ExecutionModeBenchmark [connections,...] [requests per connection] [handler delay in ms]
+ * Defaults are 1000,10000 connections, 10 requests and 5 ms. Opening 10k connections needs
+ * a file descriptor limit of at least 20k (ulimit -n).
+ */
+public class ExecutionModeBenchmark {
+  private static final int PORT = 8362;
+  private static final byte[] REQUEST = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(ISO_8859_1);
+
+  public static void main(String[] args) throws Exception {
+    int[] connectionCounts = args.length > 0 ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray() : new int[] {1000, 10000};
+    int requestsPerConnection = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    int handlerDelay = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+    System.out.printf("%-16s %12s %10s %10s %12s %10s %10s%n", "engine", "connections", "requests", "seconds", "requests/s", "p50 ms", "p99 ms");
+    for (int connections : connectionCounts)
+      for (Engine engine : new Engine[] {Engine.THREAD_POOL, Engine.VIRTUAL_THREADS})
+        run(engine, connections, requestsPerConnection, handlerDelay);
+    System.exit(0);
+  }
+
+  private static void run(Engine engine, int connections, int requestsPerConnection, int handlerDelay) throws Exception {
+    Configuration configuration = new Configuration();
+    configuration.setPort(PORT);
+    configuration.setEngine(engine);
+    configuration.setRequestTimeOut(600000);
+    configuration.setKeepAliveTimeOut(600000);
+
+    Server server = new Server(configuration);
+    server.handlers.put(Pattern.compile(".*"), new BlockingHandler(handlerDelay));
+    Thread serverThread = new Thread(server::start);
+    serverThread.start();
+    while (!server.isRunning())
+      Thread.sleep(10);
+
+    List<Socket> sockets = new ArrayList<>();
+    for (int i = 0; i < connections; i++)
+      sockets.add(new Socket("localhost", PORT));
+
+    long[] latencies = new long[connections * requestsPerConnection];
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch finished = new CountDownLatch(connections);
+    for (int i = 0; i < connections; i++) {
+      Socket socket = sockets.get(i);
+      int offset = i * requestsPerConnection;
+      Thread.ofVirtual().start(() -> {
+        try (Socket ignored = socket) {
+          start.await();
+          sendRequests(socket, latencies, offset, requestsPerConnection);
+        } catch (Exception e) {
+          System.out.println(e.getMessage());
+        } finally {
+          finished.countDown();
+        }
+      });
+    }
+
+    long startTime = System.nanoTime();
+    start.countDown();
+    finished.await(10, TimeUnit.MINUTES);
+    double seconds = (System.nanoTime() - startTime) / 1e9;
+
+    server.stop();
+    serverThread.join();
+
+    Arrays.sort(latencies);
+    System.out.printf("%-16s %12d %10d %10.2f %12.0f %10.2f %10.2f%n", engine, connections, latencies.length, seconds,
+      latencies.length / seconds, percentile(latencies, 0.5), percentile(latencies, 0.99));
+  }
+
+  private static void sendRequests(Socket socket, long[] latencies, int offset, int count) throws IOException {
+    OutputStream out = socket.getOutputStream();
+    HttpMessageReader reader = new HttpMessageReader(socket.getInputStream(), 65536);
+    for (int i = 0; i < count; i++) {
+      long requestStart = System.nanoTime();
+      out.write(REQUEST);
+      String headers = reader.readStartLineAndHeaders();
+      int contentLength = Integer.parseInt(headers.substring(headers.indexOf("Content-Length: ") + 16).split("\r\n")[0]);
+      reader.readExactNumberOfBytes(contentLength, ISO_8859_1);
+      latencies[offset + i] = System.nanoTime() - requestStart;
+    }
+  }
+
+  private static double percentile(long[] sortedLatencies, double percentile) {
+    return sortedLatencies[(int) Math.min(sortedLatencies.length - 1, sortedLatencies.length * percentile)] / 1e6;
+  }
+
+  private static class BlockingHandler extends Handler {
+    private final int delay;
+
+    BlockingHandler(int delay) {
+      this.delay = delay;
+    }
+
+    @Override
+    protected void handle(Request request, Response response) {
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      response.responseStatusCode = OK;
+      response.setBody("ok");
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static core.HttpRequestRegEx.CRLF;
+
+/**
+ * Validates the request line and every header of a request with the regular expressions of
+ * HttpRequestRegEx and with the hand-written scanner of HttpGrammar that replaced them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GrammarBenchmark {
+  @Param({"SMALL_GET", "COOKIE_HEAVY", "FORM_POST"})
+  public RequestCorpus corpus;
+
+  private String requestLine;
+  private String[] headers;
+  private String method;
+  private String httpVersion;
+
+  @Setup
+  public void setUp() {
+    String[] lines = corpus.getStartLineAndHeaders().split(CRLF);
+    requestLine = lines[0];
+    headers = new String[lines.length - 1];
+    System.arraycopy(lines, 1, headers, 0, headers.length);
+
+    String[] parts = requestLine.split(" ");
+    method = parts[0];
+    httpVersion = parts[2];
+  }
+
+  @Benchmark
+  public void regularExpressions(Blackhole blackhole) {
+    blackhole.consume(HttpRequestRegEx.validateRequestLineFormat(requestLine));
+    blackhole.consume(HttpRequestRegEx.validateMethod(method));
+    blackhole.consume(HttpRequestRegEx.validateHttpVersion(httpVersion));
+    for (String header : headers)
+      blackhole.consume(HttpRequestRegEx.validateHeader(header));
+  }
+
+  @Benchmark
+  public void grammar(Blackhole blackhole) {
+    blackhole.consume(HttpGrammar.validateRequestLineFormat(requestLine));
+    blackhole.consume(HttpGrammar.validateMethod(method));
+    blackhole.consume(HttpGrammar.validateHttpVersion(httpVersion));
+    for (String header : headers)
+      blackhole.consume(HttpGrammar.validateHeader(header));
+  }
+}
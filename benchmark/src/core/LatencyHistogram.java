@@ -0,0 +1,70 @@
+package core;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds. Values below 256 get a bucket each, larger
+ * values share a bucket with neighbours that differ by less than 1/128 of their magnitude, so
+ * percentiles are reported with better than 1% precision from a fixed array of counters.
+ * Not thread-safe: every connection records into its own histogram and they are added up at the end.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 8;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int HALF = SUB_BUCKETS / 2;
+
+  private final long[] counts = new long[SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF];
+  private long totalCount;
+  private long maximum;
+
+  public void record(long value) {
+    value = Math.max(0, value);
+    counts[indexOf(value)]++;
+    totalCount++;
+    maximum = Math.max(maximum, value);
+  }
+
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < counts.length; i++)
+      counts[i] += other.counts[i];
+    totalCount += other.totalCount;
+    maximum = Math.max(maximum, other.maximum);
+  }
+
+  public long getTotalCount() {
+    return totalCount;
+  }
+
+  public long getMaximum() {
+    return maximum;
+  }
+
+  public long getValueAtPercentile(double percentile) {
+    if (totalCount == 0)
+      return 0;
+
+    long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+    long count = 0;
+    for (int i = 0; i < counts.length; i++) {
+      count += counts[i];
+      if (count >= target)
+        return Math.min(maximum, highestValueOf(i));
+    }
+    return maximum;
+  }
+
+  static int indexOf(long value) {
+    if (value < SUB_BUCKETS)
+      return (int) value;
+
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+    return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+  }
+
+  static long highestValueOf(int index) {
+    if (index < SUB_BUCKETS)
+      return index;
+
+    int shift = (index - SUB_BUCKETS) / HALF + 1;
+    long subBucket = (index - SUB_BUCKETS) % HALF + HALF;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,446 @@
+package core;
+
+import handlers.FileCache;
+import handlers.FileSystemHandler;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Loopback load generator for the whole server stack: accept, RequestProcessor, FileSystemHandler
+ * and the write path. By default it starts the server in-process on a temporary document root
+ * (small.html 1 KB, medium.html 32 KB, large.bin 1 MB) once for every requested engine and prints
+ * one line per run.
+ *
+ * Without --rate the load is a closed loop: every connection keeps --pipeline requests in flight
+ * and sends the next one as soon as a response arrives. With --rate the load is an open loop:
+ * requests are scheduled at a constant rate spread over all connections and latency is measured
+ * from the scheduled start, not from the moment the request could actually be written, so a
+ * stalled server is charged for the requests that queue up behind it (no coordinated omission).
+ *
+ * Usage: java -cp target/benchmarks.jar core.LoadGenerator [options]
+ *   --engine THREAD_POOL,NIO,VIRTUAL_THREADS   engines to compare (default: all)
+ *   --target host:port      load an already running server instead of starting one
+ *   --connections 64        concurrent connections (or concurrent clients without keep-alive)
+ *   --rate 0                requests per second over all connections, 0 for a closed loop
+ *   --pipeline 1            requests in flight per keep-alive connection
+ *   --keep-alive true       false opens a new connection with Connection: close for every request
+ *   --mix /small.html=90,/medium.html=9,/large.bin=1   request paths with weights
+ *   --warmup 5              seconds before latencies are recorded
+ *   --duration 20           seconds of measurement
+ *   --threads N             thread pool size of THREAD_POOL (default: number of connections)
+ *   --event-loops N         event loops of NIO (default: number of cores)
+ *   --cache 0               FileCache size in bytes for the in-process handler, 0 disables it
+ *   --port 8363             port of the in-process server
+ *   --histogram             also print the latency distribution
+ */
+public class LoadGenerator {
+  private static final long DRAIN_TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+  private final Map<String, String> options;
+  private final String host;
+  private final int port;
+  private final int connections;
+  private final double rate;
+  private final int pipeline;
+  private final boolean keepAlive;
+  private final String[] paths;
+  private final int[] cumulativeWeights;
+  private final Map<String, byte[]> requests = new HashMap<>();
+
+  private final AtomicBoolean stopped = new AtomicBoolean();
+  private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+  private final LatencyHistogram histogram = new LatencyHistogram();
+  private long completed;
+  private long failed;
+  private long incomplete;
+  private long measureStart;
+  private long measureEnd;
+
+  LoadGenerator(Map<String, String> options, String host, int port) {
+    this.options = options;
+    this.host = host;
+    this.port = port;
+    this.connections = Integer.parseInt(options.get("connections"));
+    this.rate = Double.parseDouble(options.get("rate"));
+    this.pipeline = Integer.parseInt(options.get("pipeline"));
+    this.keepAlive = Boolean.parseBoolean(options.get("keep-alive"));
+
+    String[] mix = options.get("mix").split(",");
+    paths = new String[mix.length];
+    cumulativeWeights = new int[mix.length];
+    int total = 0;
+    for (int i = 0; i < mix.length; i++) {
+      int equals = mix[i].lastIndexOf('=');
+      paths[i] = equals == -1 ? mix[i] : mix[i].substring(0, equals);
+      total += equals == -1 ? 1 : Integer.parseInt(mix[i].substring(equals + 1));
+      cumulativeWeights[i] = total;
+      requests.put(paths[i], ("GET " + paths[i] + " HTTP/1.1\r\nHost: " + host + ":" + port + "\r\n" +
+        (keepAlive ? "" : "Connection: close\r\n") + "\r\n").getBytes(ISO_8859_1));
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = parseOptions(args);
+
+    System.out.printf("%-16s %11s %8s %8s %10s %8s %6s %10s %9s %9s %9s %9s%n", "engine", "connections", "pipeline",
+      "rate", "completed", "failed", "late", "requests/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+
+    if (options.containsKey("target")) {
+      String[] target = options.get("target").split(":");
+      new LoadGenerator(options, target[0], Integer.parseInt(target[1])).run("external");
+      return;
+    }
+
+    Path documentRoot = createDocumentRoot();
+    try {
+      for (String engine : options.get("engine").split(","))
+        runInProcess(Engine.valueOf(engine.trim()), options, documentRoot);
+    } finally {
+      try (Stream<Path> files = Files.walk(documentRoot)) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+    System.exit(0);
+  }
+
+  private static void runInProcess(Engine engine, Map<String, String> options, Path documentRoot) throws Exception {
+    Configuration configuration = new Configuration();
+    configuration.setPort(Integer.parseInt(options.get("port")));
+    configuration.setEngine(engine);
+    configuration.setRequestTimeOut(600000);
+    configuration.setKeepAliveTimeOut(600000);
+    configuration.setMaximumRequestsPerConnection(Integer.MAX_VALUE);
+    configuration.setNumberOfThreads(Integer.parseInt(options.getOrDefault("threads", options.get("connections"))));
+    if (options.containsKey("event-loops"))
+      configuration.setNumberOfEventLoops(Integer.parseInt(options.get("event-loops")));
+
+    long cacheSize = Long.parseLong(options.get("cache"));
+    FileCache fileCache = cacheSize > 0 ? new FileCache(cacheSize, cacheSize) : null;
+
+    Server server = new Server(configuration);
+    server.setHandler(".*", fileCache == null ? new FileSystemHandler(documentRoot.toString()) : new FileSystemHandler(documentRoot.toString(), fileCache));
+    Thread serverThread = new Thread(server::start, "load-test-server");
+    serverThread.start();
+    while (!server.isRunning())
+      Thread.sleep(10);
+
+    try {
+      new LoadGenerator(options, "localhost", configuration.getPort()).run(engine.toString());
+    } finally {
+      server.stop();
+      serverThread.join();
+      if (fileCache != null)
+        fileCache.close();
+    }
+  }
+
+  void run(String name) throws InterruptedException {
+    long start = System.nanoTime();
+    measureStart = start + TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("warmup")));
+    measureEnd = measureStart + TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("duration")));
+    long interval = rate > 0 ? (long) (connections * 1e9 / rate) : 0;
+
+    List<Thread> workers = new ArrayList<>();
+    for (int i = 0; i < connections; i++) {
+      long firstStart = start + (interval * i) / connections;
+      workers.add(Thread.ofVirtual().start(() -> {
+        LatencyHistogram connectionHistogram = new LatencyHistogram();
+        long[] counters = new long[3];
+        try {
+          if (keepAlive)
+            runKeepAliveConnection(firstStart, interval, connectionHistogram, counters);
+          else
+            runClient(firstStart, interval, connectionHistogram, counters);
+        } finally {
+          synchronized (this) {
+            histogram.add(connectionHistogram);
+            completed += counters[0];
+            failed += counters[1];
+            incomplete += counters[2];
+          }
+        }
+      }));
+    }
+
+    long deadline = measureEnd + 2 * DRAIN_TIMEOUT;
+    for (Thread worker : workers)
+      worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+    stopped.set(true);
+    for (Socket socket : sockets)
+      closeQuietly(socket);
+    for (Thread worker : workers)
+      worker.join();
+
+    report(name, (measureEnd - measureStart) / 1e9);
+  }
+
+  private void runKeepAliveConnection(long nextStart, long interval, LatencyHistogram histogram, long[] counters) {
+    Queue<Long> inFlight = new ConcurrentLinkedQueue<>();
+    Semaphore window = new Semaphore(pipeline);
+    Socket socket = null;
+    Thread reader = null;
+    try {
+      socket = connect();
+      OutputStream out = socket.getOutputStream();
+      InputStream in = new BufferedInputStream(socket.getInputStream(), 65536);
+      reader = Thread.ofVirtual().start(() -> {
+        try {
+          while (true) {
+            int status = readResponse(in);
+            long intendedStart = inFlight.remove();
+            window.release();
+            record(intendedStart, status, histogram, counters);
+          }
+        } catch (IOException | RuntimeException ignored) {}
+      });
+
+      while (true) {
+        long intendedStart = interval > 0 ? nextStart : System.nanoTime();
+        nextStart += interval;
+        if (intendedStart >= measureEnd || stopped.get())
+          break;
+        if (interval > 0)
+          sleepUntil(intendedStart);
+        while (!window.tryAcquire(10, TimeUnit.MILLISECONDS))
+          if (stopped.get())
+            return;
+        if (interval == 0)
+          intendedStart = System.nanoTime();
+        inFlight.add(intendedStart);
+        out.write(requests.get(pickPath()));
+        out.flush();
+      }
+
+      long deadline = System.nanoTime() + DRAIN_TIMEOUT;
+      while (!inFlight.isEmpty() && reader.isAlive() && System.nanoTime() < deadline && !stopped.get())
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    } catch (IOException | InterruptedException e) {
+      if (!stopped.get())
+        counters[1]++;
+    } finally {
+      closeQuietly(socket);
+      joinQuietly(reader);
+      for (long intendedStart : inFlight)
+        if (intendedStart >= measureStart)
+          counters[2]++;
+    }
+  }
+
+  private void runClient(long nextStart, long interval, LatencyHistogram histogram, long[] counters) {
+    while (!stopped.get()) {
+      long intendedStart = interval > 0 ? nextStart : System.nanoTime();
+      nextStart += interval;
+      if (intendedStart >= measureEnd)
+        return;
+      if (interval > 0)
+        sleepUntil(intendedStart);
+
+      Socket socket = null;
+      try {
+        socket = connect();
+        socket.getOutputStream().write(requests.get(pickPath()));
+        record(intendedStart, readResponse(new BufferedInputStream(socket.getInputStream(), 65536)), histogram, counters);
+      } catch (IOException e) {
+        if (stopped.get() && intendedStart >= measureStart)
+          counters[2]++;
+        else if (intendedStart >= measureStart)
+          counters[1]++;
+      } finally {
+        closeQuietly(socket);
+      }
+    }
+  }
+
+  private void record(long intendedStart, int status, LatencyHistogram histogram, long[] counters) {
+    if (intendedStart < measureStart)
+      return;
+
+    histogram.record(System.nanoTime() - intendedStart);
+    counters[0]++;
+    if (status >= 400)
+      counters[1]++;
+  }
+
+  private Socket connect() throws IOException {
+    Socket socket = new Socket(host, port);
+    socket.setTcpNoDelay(true);
+    sockets.add(socket);
+    if (stopped.get()) {
+      closeQuietly(socket);
+      throw new IOException("Load test is over");
+    }
+    return socket;
+  }
+
+  private String pickPath() {
+    int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+    for (int i = 0; i < cumulativeWeights.length; i++)
+      if (value < cumulativeWeights[i])
+        return paths[i];
+    return paths[paths.length - 1];
+  }
+
+  static int readResponse(InputStream in) throws IOException {
+    String statusLine = readLine(in);
+    int status = Integer.parseInt(statusLine.substring(9, 12));
+    long contentLength = -1;
+    boolean chunked = false;
+    for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+      int colon = line.indexOf(':');
+      String name = line.substring(0, colon).trim();
+      String value = line.substring(colon + 1).trim();
+      if (name.equalsIgnoreCase("Content-Length"))
+        contentLength = Long.parseLong(value);
+      else if (name.equalsIgnoreCase("Transfer-Encoding") && value.toLowerCase().contains("chunked"))
+        chunked = true;
+    }
+
+    if (status == 204 || status == 304 || status < 200)
+      return status;
+    if (chunked) {
+      for (long size = Long.parseLong(readLine(in).split(";")[0].trim(), 16); size > 0; size = Long.parseLong(readLine(in).split(";")[0].trim(), 16)) {
+        skip(in, size);
+        readLine(in);
+      }
+      while (!readLine(in).isEmpty());
+    } else if (contentLength >= 0) {
+      skip(in, contentLength);
+    } else {
+      while (in.skip(Long.MAX_VALUE) > 0 || in.read() != -1);
+    }
+    return status;
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) != '\n') {
+      if (c == -1)
+        throw new EOFException();
+      if (c != '\r')
+        line.append((char) c);
+    }
+    return line.toString();
+  }
+
+  private static void skip(InputStream in, long count) throws IOException {
+    while (count > 0) {
+      long skipped = in.skip(count);
+      if (skipped <= 0) {
+        if (in.read() == -1)
+          throw new EOFException();
+        skipped = 1;
+      }
+      count -= skipped;
+    }
+  }
+
+  private void report(String name, double seconds) {
+    System.out.printf("%-16s %11d %8d %8s %10d %8d %6d %10.0f %9.3f %9.3f %9.3f %9.3f%n", name, connections,
+      keepAlive ? pipeline : 0, rate > 0 ? String.format("%.0f", rate) : "closed", completed, failed, incomplete,
+      completed / seconds, milliseconds(histogram.getValueAtPercentile(50)), milliseconds(histogram.getValueAtPercentile(99)),
+      milliseconds(histogram.getValueAtPercentile(99.9)), milliseconds(histogram.getMaximum()));
+
+    if (options.containsKey("histogram")) {
+      for (double percentile : PERCENTILES)
+        System.out.printf("    p%-7s %12.3f ms%n", percentile, milliseconds(histogram.getValueAtPercentile(percentile)));
+      System.out.printf("    %-8s %12.3f ms%n", "max", milliseconds(histogram.getMaximum()));
+    }
+  }
+
+  private static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new LinkedHashMap<>();
+    options.put("engine", Arrays.stream(Engine.values()).map(Enum::name).reduce((a, b) -> a + "," + b).get());
+    options.put("connections", "64");
+    options.put("rate", "0");
+    options.put("pipeline", "1");
+    options.put("keep-alive", "true");
+    options.put("mix", "/small.html=90,/medium.html=9,/large.bin=1");
+    options.put("warmup", "5");
+    options.put("duration", "20");
+    options.put("cache", "0");
+    options.put("port", "8363");
+
+    for (int i = 0; i < args.length; i++) {
+      if (!args[i].startsWith("--"))
+        throw new IllegalArgumentException("Unexpected argument " + args[i]);
+      String name = args[i].substring(2);
+      boolean flag = i + 1 == args.length || args[i + 1].startsWith("--");
+      options.put(name, flag ? "true" : args[++i]);
+    }
+    return options;
+  }
+
+  private static Path createDocumentRoot() throws IOException {
+    Path documentRoot = Files.createTempDirectory("load-test");
+    Files.write(documentRoot.resolve("small.html"), page(1024));
+    Files.write(documentRoot.resolve("medium.html"), page(32 * 1024));
+    byte[] large = new byte[1024 * 1024];
+    ThreadLocalRandom.current().nextBytes(large);
+    Files.write(documentRoot.resolve("large.bin"), large);
+    return documentRoot;
+  }
+
+  private static byte[] page(int size) {
+    StringBuilder page = new StringBuilder("<html><body>");
+    while (page.length() < size - 14)
+      page.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n");
+    page.setLength(size - 14);
+    return page.append("</body></html>").toString().getBytes(ISO_8859_1);
+  }
+
+  private static void sleepUntil(long deadline) {
+    for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime())
+      LockSupport.parkNanos(remaining);
+  }
+
+  private static double milliseconds(long nanoseconds) {
+    return nanoseconds / 1e6;
+  }
+
+  private void closeQuietly(Socket socket) {
+    if (socket == null)
+      return;
+    sockets.remove(socket);
+    try {
+      socket.close();
+    } catch (IOException ignored) {}
+  }
+
+  private static void joinQuietly(Thread thread) {
+    if (thread == null)
+      return;
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
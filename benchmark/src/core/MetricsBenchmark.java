@@ -0,0 +1,75 @@
+package core;
+
+import metrics.MetricRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of ServerMetrics.record for one request (route, status and four phase histograms), without the
+ * clock reads that produce the timestamps. The 4-thread variant shows the cost under contention on the
+ * same route and status.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+  private ServerMetrics metrics;
+
+  @State(Scope.Thread)
+  public static class Exchange {
+    Request request;
+    Response response;
+    long time;
+
+    @Setup
+    public void setUp() {
+      request = new Request();
+      request.route = "/users/{id}";
+      response = new Response();
+      response.responseStatusCode = HttpStatusCode.OK;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    metrics = new ServerMetrics(new MetricRegistry());
+  }
+
+  @Benchmark
+  public void record(Exchange exchange) {
+    setTimestamps(exchange);
+    metrics.record(exchange.request, exchange.response);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void recordContended(Exchange exchange) {
+    setTimestamps(exchange);
+    metrics.record(exchange.request, exchange.response);
+  }
+
+  private static void setTimestamps(Exchange exchange) {
+    long time = exchange.time += 1000;
+    Request request = exchange.request;
+    request.firstByteTime = time;
+    request.headersReadTime = time + 20_000;
+    request.parsedTime = time + 25_000;
+    request.handlerStartTime = time + 26_000;
+    request.handlerEndTime = time + 90_000 + (time & 0xFFFF);
+    request.writtenTime = request.handlerEndTime + 15_000;
+  }
+}
@@ -0,0 +1,64 @@
+package core;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+public enum RequestCorpus {
+  SMALL_GET(
+    "GET /index.html HTTP/1.1\r\n" +
+    "Host: localhost:8080\r\n" +
+    "User-Agent: curl/8.4.0\r\n" +
+    "Accept: */*\r\n" +
+    "\r\n"),
+
+  COOKIE_HEAVY(
+    "GET /account/orders?page=2&sort=date HTTP/1.1\r\n" +
+    "Host: shop.example.com\r\n" +
+    "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:120.0) Gecko/20100101 Firefox/120.0\r\n" +
+    "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8\r\n" +
+    "Accept-Language: en-US,en;q=0.5\r\n" +
+    "Accept-Encoding: gzip, deflate, br\r\n" +
+    "Referer: https://shop.example.com/account\r\n" +
+    "Connection: keep-alive\r\n" +
+    "Cookie: session=" + repeat("a1b2c3d4", 16) + "; csrftoken=" + repeat("Zx9", 20) +
+    "; _ga=GA1.2.1234567890.1700000000; _gid=GA1.2.987654321.1700000000; theme=dark; lang=en; cart=" + repeat("item%3D42%26qty%3D1%7C", 12) + "\r\n" +
+    "Cookie: consent=analytics%2Cmarketing; tracking_id=" + repeat("f00dfeed", 8) + "\r\n" +
+    "Upgrade-Insecure-Requests: 1\r\n" +
+    "Sec-Fetch-Dest: document\r\n" +
+    "Sec-Fetch-Mode: navigate\r\n" +
+    "Sec-Fetch-Site: same-origin\r\n" +
+    "Sec-Fetch-User: ?1\r\n" +
+    "If-None-Match: \"5d8c72a5edda8d6a\"\r\n" +
+    "Cache-Control: max-age=0\r\n" +
+    "\r\n"),
+
+  FORM_POST(withBody(
+    "POST /login HTTP/1.1\r\n" +
+    "Host: localhost:8080\r\n" +
+    "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:120.0) Gecko/20100101 Firefox/120.0\r\n" +
+    "Accept: text/html\r\n" +
+    "Content-Type: application/x-www-form-urlencoded; charset=UTF-8\r\n",
+    "username=john.doe%40example.com&password=s3cr3t%21&remember=on&redirect=%2Faccount%2Fhome"));
+
+  private final byte[] bytes;
+
+  RequestCorpus(String request) {
+    this.bytes = request.getBytes(ISO_8859_1);
+  }
+
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  public String getStartLineAndHeaders() {
+    String request = new String(bytes, ISO_8859_1);
+    return request.substring(0, request.indexOf("\r\n\r\n"));
+  }
+
+  private static String withBody(String startLineAndHeaders, String body) {
+    return startLineAndHeaders + "Content-Length: " + body.length() + "\r\n\r\n" + body;
+  }
+
+  private static String repeat(String value, int times) {
+    return new String(new char[times]).replace("\0", value);
+  }
+}
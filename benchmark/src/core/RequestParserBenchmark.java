@@ -0,0 +1,56 @@
+package core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and parses complete requests from memory: readStartLineAndHeaders alone measures the
+ * buffered reader, parse measures the reader together with RequestParser.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestParserBenchmark {
+  @Param({"SMALL_GET", "COOKIE_HEAVY", "FORM_POST"})
+  public RequestCorpus corpus;
+
+  private Configuration configuration;
+  private byte[] request;
+
+  @Setup
+  public void setUp() {
+    configuration = new Configuration();
+    request = corpus.getBytes();
+    if (parse().responseStatusCode != null)
+      throw new IllegalStateException(corpus + " is rejected with " + parse().responseStatusCode);
+  }
+
+  @Benchmark
+  public String readStartLineAndHeaders() {
+    return newReader().readStartLineAndHeaders();
+  }
+
+  @Benchmark
+  public Request parse() {
+    return new RequestParser(configuration).setFields(newReader());
+  }
+
+  private HttpMessageReader newReader() {
+    return new HttpMessageReader(new ByteArrayInputStream(request), configuration.getMaximumHeadersSize());
+  }
+}
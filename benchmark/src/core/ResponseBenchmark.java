@@ -0,0 +1,57 @@
+package core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static core.HttpStatusCode.OK;
+
+/**
+ * Serializes a typical HTML response, once as the String used by tests and once as the buffers
+ * that are actually written to the socket.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseBenchmark {
+  @Param({"100", "10000"})
+  public int bodySize;
+
+  private Response response;
+
+  @Setup
+  public void setUp() {
+    response = new Response();
+    response.requestMethod = "GET";
+    response.responseStatusCode = OK;
+    response.setHeader("Content-Type", "text/html; charset=ISO-8859-1");
+    response.setHeader("Last-Modified", "Sun, 06 Nov 1994 08:49:37 GMT");
+    response.setHeader("ETag", "\"5d8c72a5edda8d6a\"");
+    response.setHeader("Connection", "keep-alive");
+    response.setBody(new String(new char[bodySize]).replace('\0', 'a'));
+  }
+
+  @Benchmark
+  public String generateMessage() {
+    return response.generateMessage();
+  }
+
+  @Benchmark
+  public ByteBuffer[] serialize() {
+    return response.serialize();
+  }
+}
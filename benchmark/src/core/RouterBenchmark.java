@@ -0,0 +1,77 @@
+package core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Dispatches a request through RequestProcessor.executeHandlers with a growing number of routes.
+ * Every third route is a literal path, a path with a parameter and a regular expression, and the
+ * request path matches the last registered route, so the router can not stop early.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouterBenchmark {
+  @Param({"1", "10", "100"})
+  public int numberOfRoutes;
+
+  private RequestProcessor processor;
+  private Request request;
+  private Response response;
+
+  @Setup
+  public void setUp() throws Exception {
+    Map<Pattern, Handler> handlers = new LinkedHashMap<>();
+    String path = null;
+    for (int i = 0; i < numberOfRoutes; i++) {
+      switch (i % 3) {
+        case 0:
+          handlers.put(Pattern.compile("/api/resource" + i), new NoOpHandler());
+          path = "/api/resource" + i;
+          break;
+        case 1:
+          handlers.put(Pattern.compile(Router.toPattern("/api/resource" + i + "/{id}")), new NoOpHandler());
+          path = "/api/resource" + i + "/42";
+          break;
+        default:
+          handlers.put(Pattern.compile("/api/resource" + i + "/[0-9]+/items"), new NoOpHandler());
+          path = "/api/resource" + i + "/42/items";
+      }
+    }
+
+    processor = new RequestProcessor(null, new Configuration(), handlers);
+    request = new Request();
+    request.requestURI = new URI(path);
+    response = new Response(request);
+  }
+
+  @Benchmark
+  public Response executeHandlers() throws Exception {
+    processor.executeHandlers(request, response);
+    return response;
+  }
+
+  private static class NoOpHandler extends Handler {
+    @Override
+    protected void handle(Request request, Response response) {
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package log;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time a request thread spends in AccessLog.log while the background thread formats and writes the
+ * records to a temporary file, alone and with four producers. Records the writer can not keep up with
+ * are dropped, so the numbers are the cost the log adds to a request, not the throughput of the file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccessLogBenchmark {
+  private Path directory;
+  private AccessLog log;
+  private InetAddress address;
+
+  @Setup
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("access-log-benchmark");
+    log = new AccessLog(directory.resolve("access.log"), LogFormat.COMBINED, 8192, OverflowPolicy.DROP, 10485760, 1);
+    address = InetAddress.getLoopbackAddress();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    log.close();
+    try (var files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator)
+        Files.delete(file);
+    }
+    Files.delete(directory);
+  }
+
+  @Benchmark
+  public boolean log() {
+    return log.log(address, System.currentTimeMillis(), "GET", "/users/42?page=2", "HTTP/1.1", 200, 1024,
+      "http://localhost/users", "Mozilla/5.0 (X11; Linux x86_64)");
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean logContended() {
+    return log();
+  }
+}
@@ -0,0 +1,93 @@
+package util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares LinkedCaseInsensitiveMap with HttpHeaders when a request's headers are stored the way
+ * RequestParser used to do it (lookup, then put) and when a handful of well-known headers are read
+ * back with a different case than they were sent with.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HeaderMapBenchmark {
+  private static final String[] LOOKUPS = {"host", "content-length", "CONTENT-TYPE", "Connection", "transfer-encoding"};
+
+  @Param({"5", "20", "50"})
+  public int numberOfHeaders;
+
+  private String[] names;
+  private String[] values;
+  private LinkedCaseInsensitiveMap filledLinkedMap;
+  private HttpHeaders filledHttpHeaders;
+
+  @Setup
+  public void setUp() {
+    names = new String[numberOfHeaders];
+    values = new String[numberOfHeaders];
+    String[] common = {"Host", "User-Agent", "Accept", "Accept-Encoding", "Connection"};
+    for (int i = 0; i < numberOfHeaders; i++) {
+      names[i] = i < common.length ? common[i] : "X-Custom-Header-" + i;
+      values[i] = "value-" + i;
+    }
+
+    filledLinkedMap = new LinkedCaseInsensitiveMap();
+    filledHttpHeaders = new HttpHeaders();
+    for (int i = 0; i < numberOfHeaders; i++) {
+      filledLinkedMap.put(names[i], values[i]);
+      filledHttpHeaders.put(names[i], values[i]);
+    }
+  }
+
+  @Benchmark
+  public Map<String, String> parseLinkedCaseInsensitiveMap() {
+    LinkedCaseInsensitiveMap headers = new LinkedCaseInsensitiveMap();
+    for (int i = 0; i < names.length; i++) {
+      String existing = headers.get(names[i]);
+      headers.put(names[i], existing == null ? values[i] : existing + ", " + values[i]);
+    }
+    return headers;
+  }
+
+  @Benchmark
+  public Map<String, String> parseHttpHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    for (int i = 0; i < names.length; i++)
+      headers.add(names[i], values[i]);
+    return headers;
+  }
+
+  @Benchmark
+  public int lookupLinkedCaseInsensitiveMap() {
+    int found = 0;
+    for (String name : LOOKUPS)
+      if (filledLinkedMap.get(name) != null)
+        found++;
+    return found;
+  }
+
+  @Benchmark
+  public int lookupHttpHeaders() {
+    int found = 0;
+    for (String name : LOOKUPS)
+      if (filledHttpHeaders.get(name) != null)
+        found++;
+    return found;
+  }
+}
@@ -0,0 +1,66 @@
+package core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * One piece of a response body that is sent as is, either bytes held in memory or a region of a file
+ * ({@link FileRegion}), so that a body can be assembled from both, e.g. the parts of multipart/byteranges.
+ */
+public abstract class BodyPart {
+
+  BodyPart() {}
+
+  public static BodyPart of(ByteBuffer buffer) {
+    return new BufferPart(buffer);
+  }
+
+  public static BodyPart of(byte[] bytes) {
+    return of(ByteBuffer.wrap(bytes));
+  }
+
+  public abstract long getLength();
+
+  /**
+   * Returns a ByteBuffer or a {@link FileTransfer} positioned at the start of this part.
+   */
+  abstract Object open() throws IOException;
+
+  abstract void writeTo(OutputStream out) throws IOException;
+
+  ByteBuffer getBuffer() {
+    return null;
+  }
+
+  private static class BufferPart extends BodyPart {
+    private final ByteBuffer buffer;
+
+    BufferPart(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public long getLength() {
+      return buffer.remaining();
+    }
+
+    @Override
+    Object open() {
+      return buffer.duplicate();
+    }
+
+    @Override
+    void writeTo(OutputStream out) throws IOException {
+      ByteBuffer content = buffer.duplicate();
+      byte[] bytes = new byte[content.remaining()];
+      content.get(bytes);
+      out.write(bytes);
+    }
+
+    @Override
+    ByteBuffer getBuffer() {
+      return buffer.duplicate();
+    }
+  }
+}
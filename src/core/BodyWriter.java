@@ -0,0 +1,8 @@
+package core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface BodyWriter {
+  void writeTo(OutputStream out) throws IOException;
+}
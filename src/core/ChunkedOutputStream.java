@@ -0,0 +1,85 @@
+package core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+class ChunkedOutputStream extends OutputStream {
+  private static final int CHUNK_SIZE = 8192;
+  private static final byte[] CRLF = {'\r', '\n'};
+  private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(ISO_8859_1);
+
+  private final OutputStream out;
+  private final byte[] buffer = new byte[CHUNK_SIZE];
+  private int count;
+  private boolean closed;
+
+  ChunkedOutputStream(OutputStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    checkNotClosed();
+    if (count == buffer.length)
+      writeBufferedChunk();
+    buffer[count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    checkNotClosed();
+
+    if (length >= buffer.length) {
+      writeBufferedChunk();
+      writeChunk(bytes, offset, length);
+      return;
+    }
+
+    if (length > buffer.length - count)
+      writeBufferedChunk();
+    System.arraycopy(bytes, offset, buffer, count, length);
+    count += length;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (closed)
+      return;
+
+    writeBufferedChunk();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed)
+      return;
+
+    writeBufferedChunk();
+    out.write(LAST_CHUNK);
+    out.flush();
+    closed = true;
+  }
+
+  private void checkNotClosed() throws IOException {
+    if (closed)
+      throw new IOException("Chunked body has already been finished");
+  }
+
+  private void writeBufferedChunk() throws IOException {
+    writeChunk(buffer, 0, count);
+    count = 0;
+  }
+
+  private void writeChunk(byte[] bytes, int offset, int length) throws IOException {
+    if (length == 0)
+      return;
+
+    out.write(Integer.toHexString(length).getBytes(ISO_8859_1));
+    out.write(CRLF);
+    out.write(bytes, offset, length);
+    out.write(CRLF);
+  }
+}
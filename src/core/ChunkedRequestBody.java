@@ -0,0 +1,153 @@
+package core;
+
+import util.HttpHeaders;
+
+import java.io.IOException;
+
+import static core.HttpGrammar.validateHeader;
+import static core.HttpStatusCode.BAD_REQUEST;
+import static core.HttpStatusCode.REQUEST_ENTITY_TOO_LARGE;
+
+public class ChunkedRequestBody extends RequestBody {
+  private static final int MAXIMUM_CHUNK_SIZE_LINE = 1024;
+  private static final int MAXIMUM_CHUNK_SIZE_DIGITS = 15;
+
+  private final HttpMessageReader reader;
+  private final long maximumBodySize;
+  private final int maximumTrailersSize;
+  private final HttpHeaders trailers = new HttpHeaders();
+  private long chunkRemaining;
+  private long bodySize;
+  private boolean started;
+  private boolean finished;
+
+  ChunkedRequestBody(HttpMessageReader reader, long maximumBodySize, int maximumTrailersSize) {
+    super(reader, -1);
+    this.reader = reader;
+    this.maximumBodySize = maximumBodySize;
+    this.maximumTrailersSize = maximumTrailersSize;
+  }
+
+  public HttpHeaders getTrailers() {
+    return trailers;
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  /**
+   * The decoded size of the body once it has been read to the last chunk, 0 before that, so
+   * Request.calculateContentLength() never reports a negative length for a chunked request.
+   */
+  @Override
+  public long getLength() {
+    return finished ? bodySize : 0;
+  }
+
+  @Override
+  public long getRemaining() {
+    return finished ? 0 : -1;
+  }
+
+  @Override
+  public boolean isStarted() {
+    return started;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int count) throws IOException {
+    if (count == 0)
+      return 0;
+    if (chunkRemaining == 0 && !nextChunk())
+      return -1;
+
+    int read = reader.read(bytes, offset, (int) Math.min(count, chunkRemaining));
+    if (read == -1)
+      throw new HttpError(BAD_REQUEST);
+    consume(read);
+    return read;
+  }
+
+  @Override
+  public long skip(long count) throws IOException {
+    if (count <= 0 || (chunkRemaining == 0 && !nextChunk()))
+      return 0;
+
+    long skipped = reader.skipBuffered(Math.min(count, chunkRemaining));
+    if (skipped == 0)
+      return read(getSkipBuffer(), 0, (int) Math.min(SKIP_BUFFER_SIZE, count));
+    consume(skipped);
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return (int) Math.min(chunkRemaining, reader.bufferedBytes());
+  }
+
+  @Override
+  boolean discard(long maximumUnbufferedBytes) throws IOException {
+    long discarded = 0;
+    while (!finished) {
+      if (discarded > maximumUnbufferedBytes)
+        return false;
+      discarded += skip(Long.MAX_VALUE);
+    }
+    return true;
+  }
+
+  static long parseChunkSize(String line) {
+    int end = 0;
+    while (end < line.length() && Character.digit(line.charAt(end), 16) != -1)
+      end++;
+
+    if (end == 0 || end > MAXIMUM_CHUNK_SIZE_DIGITS)
+      return -1;
+    if (end < line.length() && line.charAt(end) != ';' && line.charAt(end) != ' ' && line.charAt(end) != '\t')
+      return -1;
+    return Long.parseLong(line.substring(0, end), 16);
+  }
+
+  private boolean nextChunk() {
+    if (finished)
+      return false;
+
+    started = true;
+    String line = reader.readLine(MAXIMUM_CHUNK_SIZE_LINE);
+    long size = line == null ? -1 : parseChunkSize(line);
+    if (size == -1)
+      throw new HttpError(BAD_REQUEST);
+
+    if (size == 0) {
+      readTrailers();
+      finished = true;
+      finishedTime = System.nanoTime();
+      return false;
+    }
+
+    bodySize += size;
+    if (bodySize > maximumBodySize)
+      throw new HttpError(REQUEST_ENTITY_TOO_LARGE);
+    chunkRemaining = size;
+    return true;
+  }
+
+  private void consume(long count) {
+    chunkRemaining -= count;
+    if (chunkRemaining == 0 && !"".equals(reader.readLine(2)))
+      throw new HttpError(BAD_REQUEST);
+  }
+
+  private void readTrailers() {
+    int size = 0;
+    for (String line = reader.readLine(maximumTrailersSize); !"".equals(line); line = reader.readLine(maximumTrailersSize - size)) {
+      if (line == null || !validateHeader(line))
+        throw new HttpError(BAD_REQUEST);
+
+      size += line.length() + 2;
+      int colon = line.indexOf(':');
+      trailers.add(line.substring(0, colon), line.substring(colon + 1).trim());
+    }
+  }
+}
@@ -1,11 +1,24 @@
 package core;
 
+import log.LogFormat;
+import log.OverflowPolicy;
+
 import java.util.ArrayList;
 import java.util.List;
 
 public class Configuration {
   private int maximumURILength = 8190;
+  private int maximumHeadersSize = 65536;
+  private int maximumNumberOfHeaders = 100;
+  private int maximumHeaderLength = 8190;
+  private long maximumBodySize = 104857600;
+  private long maximumPartSize = 52428800;
+  private int maximumNumberOfParts = 100;
+  private int partMemoryThreshold = 8192;
+  private int maximumFormParameterSize = 65536;
   private int requestTimeOut = 5000;
+  private int keepAliveTimeOut = 5000;
+  private int maximumRequestsPerConnection = 100;
   private int port = 8080;
   private List<String> implementedMethods = new ArrayList<String>(){{
     add("GET");
@@ -16,16 +29,83 @@ public class Configuration {
     add("HTTP/1.0");
     add("HTTP/1.1");
   }};
+  private boolean compressionEnabled = true;
+  private int compressionMinimumSize = 1024;
+  private List<String> compressibleContentTypes = new ArrayList<String>(){{
+    add("text/html");
+    add("text/plain");
+    add("text/css");
+    add("text/xml");
+    add("application/javascript");
+    add("application/json");
+    add("application/xml");
+    add("image/svg+xml");
+  }};
   private int numberOfThreads = 10;
+  private int workQueueCapacity = 1000;
+  private int maximumConnections = 10000;
+  private OverloadPolicy overloadPolicy = OverloadPolicy.SERVICE_UNAVAILABLE;
+  private int retryAfter = 1;
+  private Engine engine = Engine.THREAD_POOL;
+  private int numberOfEventLoops = Runtime.getRuntime().availableProcessors();
+  private String metricsPath;
+  private String accessLogPath;
+  private LogFormat accessLogFormat = LogFormat.COMBINED;
+  private int accessLogBufferSize = 8192;
+  private OverflowPolicy accessLogOverflowPolicy = OverflowPolicy.DROP;
+  private long accessLogMaximumFileSize = 104857600;
+  private int accessLogMaximumFiles = 5;
+  private String slowRequestLogPath;
+  private int slowRequestThreshold = 1000;
 
   public int getMaximumURILength() {
     return maximumURILength;
   }
 
+  public int getMaximumHeadersSize() {
+    return maximumHeadersSize;
+  }
+
+  public int getMaximumNumberOfHeaders() {
+    return maximumNumberOfHeaders;
+  }
+
+  public int getMaximumHeaderLength() {
+    return maximumHeaderLength;
+  }
+
+  public long getMaximumBodySize() {
+    return maximumBodySize;
+  }
+
+  public long getMaximumPartSize() {
+    return maximumPartSize;
+  }
+
+  public int getMaximumNumberOfParts() {
+    return maximumNumberOfParts;
+  }
+
+  public int getPartMemoryThreshold() {
+    return partMemoryThreshold;
+  }
+
+  public int getMaximumFormParameterSize() {
+    return maximumFormParameterSize;
+  }
+
   public int getRequestTimeOut() {
     return requestTimeOut;
   }
 
+  public int getKeepAliveTimeOut() {
+    return keepAliveTimeOut;
+  }
+
+  public int getMaximumRequestsPerConnection() {
+    return maximumRequestsPerConnection;
+  }
+
   public int getPort() {
     return port;
   }
@@ -34,10 +114,82 @@ public class Configuration {
     return implementedMethods;
   }
 
+  public boolean isCompressionEnabled() {
+    return compressionEnabled;
+  }
+
+  public int getCompressionMinimumSize() {
+    return compressionMinimumSize;
+  }
+
+  public List<String> getCompressibleContentTypes() {
+    return compressibleContentTypes;
+  }
+
   public int getNumberOfThreads() {
     return numberOfThreads;
   }
 
+  public int getWorkQueueCapacity() {
+    return workQueueCapacity;
+  }
+
+  public int getMaximumConnections() {
+    return maximumConnections;
+  }
+
+  public OverloadPolicy getOverloadPolicy() {
+    return overloadPolicy;
+  }
+
+  public int getRetryAfter() {
+    return retryAfter;
+  }
+
+  public Engine getEngine() {
+    return engine;
+  }
+
+  public int getNumberOfEventLoops() {
+    return numberOfEventLoops;
+  }
+
+  public String getMetricsPath() {
+    return metricsPath;
+  }
+
+  public String getAccessLogPath() {
+    return accessLogPath;
+  }
+
+  public LogFormat getAccessLogFormat() {
+    return accessLogFormat;
+  }
+
+  public int getAccessLogBufferSize() {
+    return accessLogBufferSize;
+  }
+
+  public OverflowPolicy getAccessLogOverflowPolicy() {
+    return accessLogOverflowPolicy;
+  }
+
+  public long getAccessLogMaximumFileSize() {
+    return accessLogMaximumFileSize;
+  }
+
+  public int getAccessLogMaximumFiles() {
+    return accessLogMaximumFiles;
+  }
+
+  public String getSlowRequestLogPath() {
+    return slowRequestLogPath;
+  }
+
+  public int getSlowRequestThreshold() {
+    return slowRequestThreshold;
+  }
+
   public List<String> getSupportedHttpVersions() {
     return supportedHttpVersions;
   }
@@ -46,10 +198,50 @@ public class Configuration {
     this.maximumURILength = maximumURILength;
   }
 
+  public void setMaximumHeadersSize(int maximumHeadersSize) {
+    this.maximumHeadersSize = maximumHeadersSize;
+  }
+
+  public void setMaximumNumberOfHeaders(int maximumNumberOfHeaders) {
+    this.maximumNumberOfHeaders = maximumNumberOfHeaders;
+  }
+
+  public void setMaximumHeaderLength(int maximumHeaderLength) {
+    this.maximumHeaderLength = maximumHeaderLength;
+  }
+
+  public void setMaximumBodySize(long maximumBodySize) {
+    this.maximumBodySize = maximumBodySize;
+  }
+
+  public void setMaximumPartSize(long maximumPartSize) {
+    this.maximumPartSize = maximumPartSize;
+  }
+
+  public void setMaximumNumberOfParts(int maximumNumberOfParts) {
+    this.maximumNumberOfParts = maximumNumberOfParts;
+  }
+
+  public void setPartMemoryThreshold(int partMemoryThreshold) {
+    this.partMemoryThreshold = partMemoryThreshold;
+  }
+
+  public void setMaximumFormParameterSize(int maximumFormParameterSize) {
+    this.maximumFormParameterSize = maximumFormParameterSize;
+  }
+
   public void setRequestTimeOut(int requestTimeOut) {
     this.requestTimeOut = requestTimeOut;
   }
 
+  public void setKeepAliveTimeOut(int keepAliveTimeOut) {
+    this.keepAliveTimeOut = keepAliveTimeOut;
+  }
+
+  public void setMaximumRequestsPerConnection(int maximumRequestsPerConnection) {
+    this.maximumRequestsPerConnection = maximumRequestsPerConnection;
+  }
+
   public void setPort(int port) {
     this.port = port;
   }
@@ -58,10 +250,82 @@ public class Configuration {
     this.implementedMethods = implementedMethods;
   }
 
+  public void setCompressionEnabled(boolean compressionEnabled) {
+    this.compressionEnabled = compressionEnabled;
+  }
+
+  public void setCompressionMinimumSize(int compressionMinimumSize) {
+    this.compressionMinimumSize = compressionMinimumSize;
+  }
+
+  public void setCompressibleContentTypes(List<String> compressibleContentTypes) {
+    this.compressibleContentTypes = compressibleContentTypes;
+  }
+
   public void setNumberOfThreads(int numberOfThreads) {
     this.numberOfThreads = numberOfThreads;
   }
 
+  public void setWorkQueueCapacity(int workQueueCapacity) {
+    this.workQueueCapacity = workQueueCapacity;
+  }
+
+  public void setMaximumConnections(int maximumConnections) {
+    this.maximumConnections = maximumConnections;
+  }
+
+  public void setOverloadPolicy(OverloadPolicy overloadPolicy) {
+    this.overloadPolicy = overloadPolicy;
+  }
+
+  public void setRetryAfter(int retryAfter) {
+    this.retryAfter = retryAfter;
+  }
+
+  public void setEngine(Engine engine) {
+    this.engine = engine;
+  }
+
+  public void setNumberOfEventLoops(int numberOfEventLoops) {
+    this.numberOfEventLoops = numberOfEventLoops;
+  }
+
+  public void setMetricsPath(String metricsPath) {
+    this.metricsPath = metricsPath;
+  }
+
+  public void setAccessLogPath(String accessLogPath) {
+    this.accessLogPath = accessLogPath;
+  }
+
+  public void setAccessLogFormat(LogFormat accessLogFormat) {
+    this.accessLogFormat = accessLogFormat;
+  }
+
+  public void setAccessLogBufferSize(int accessLogBufferSize) {
+    this.accessLogBufferSize = accessLogBufferSize;
+  }
+
+  public void setAccessLogOverflowPolicy(OverflowPolicy accessLogOverflowPolicy) {
+    this.accessLogOverflowPolicy = accessLogOverflowPolicy;
+  }
+
+  public void setAccessLogMaximumFileSize(long accessLogMaximumFileSize) {
+    this.accessLogMaximumFileSize = accessLogMaximumFileSize;
+  }
+
+  public void setAccessLogMaximumFiles(int accessLogMaximumFiles) {
+    this.accessLogMaximumFiles = accessLogMaximumFiles;
+  }
+
+  public void setSlowRequestLogPath(String slowRequestLogPath) {
+    this.slowRequestLogPath = slowRequestLogPath;
+  }
+
+  public void setSlowRequestThreshold(int slowRequestThreshold) {
+    this.slowRequestThreshold = slowRequestThreshold;
+  }
+
   public void setSupportedHttpVersions(List<String> supportedHttpVersions) {
     this.supportedHttpVersions = supportedHttpVersions;
   }
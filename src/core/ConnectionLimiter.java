@@ -0,0 +1,45 @@
+package core;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConnectionLimiter {
+  private final int maximumConnections;
+  private final Semaphore permits;
+  private final LongAdder shedConnections = new LongAdder();
+
+  ConnectionLimiter(int maximumConnections) {
+    this.maximumConnections = maximumConnections;
+    this.permits = new Semaphore(maximumConnections);
+  }
+
+  boolean tryAcquire() {
+    return permits.tryAcquire();
+  }
+
+  boolean tryAcquire(long milliseconds) {
+    try {
+      return permits.tryAcquire(milliseconds, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  void release() {
+    permits.release();
+  }
+
+  void recordShed() {
+    shedConnections.increment();
+  }
+
+  public int getActiveConnections() {
+    return maximumConnections - permits.availablePermits();
+  }
+
+  public long getShedConnections() {
+    return shedConnections.sum();
+  }
+}
@@ -0,0 +1,7 @@
+package core;
+
+public enum Engine {
+  THREAD_POOL,
+  VIRTUAL_THREADS,
+  NIO
+}
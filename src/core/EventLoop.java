@@ -0,0 +1,124 @@
+package core;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static util.Helper.safeClose;
+
+public class EventLoop implements Runnable {
+  private static final long TIMEOUT_CHECK_INTERVAL = 100;
+  private static final System.Logger LOGGER = System.getLogger(EventLoop.class.getName());
+
+  private final Selector selector;
+  private final Configuration configuration;
+  private final Router router;
+  private final ConnectionLimiter connectionLimiter;
+  private final ServerMetrics metrics;
+  private final RequestLog requestLog;
+  private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+  private volatile boolean running = true;
+  private long lastTimeoutCheck = System.currentTimeMillis();
+
+  EventLoop(Configuration configuration, Router router, ConnectionLimiter connectionLimiter, ServerMetrics metrics, RequestLog requestLog) {
+    this.configuration = configuration;
+    this.router = router;
+    this.connectionLimiter = connectionLimiter;
+    this.metrics = metrics;
+    this.requestLog = requestLog;
+    try {
+      this.selector = Selector.open();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not open selector", e);
+    }
+  }
+
+  void register(SocketChannel channel) {
+    pendingChannels.add(channel);
+    selector.wakeup();
+  }
+
+  void stop() {
+    running = false;
+    selector.wakeup();
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (running) {
+        selector.select(TIMEOUT_CHECK_INTERVAL);
+        registerPendingChannels();
+        processSelectedKeys();
+        closeTimedOutConnections();
+      }
+    } catch (Exception e) {
+      LOGGER.log(System.Logger.Level.ERROR, "Event loop stopped after an error", e);
+    } finally {
+      closeAll();
+    }
+  }
+
+  private void registerPendingChannels() {
+    SocketChannel channel;
+    while ((channel = pendingChannels.poll()) != null) {
+      try {
+        new NioConnection(channel, selector, configuration, router, connectionLimiter, metrics, requestLog);
+      } catch (IOException e) {
+        safeClose(channel);
+        connectionLimiter.release();
+      }
+    }
+  }
+
+  private void processSelectedKeys() {
+    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+    while (keys.hasNext()) {
+      SelectionKey key = keys.next();
+      keys.remove();
+
+      NioConnection connection = (NioConnection) key.attachment();
+      try {
+        if (key.isReadable())
+          connection.read();
+        if (key.isValid() && key.isWritable())
+          connection.write();
+      } catch (Exception e) {
+        connection.close();
+      }
+    }
+  }
+
+  private void closeTimedOutConnections() {
+    long now = System.currentTimeMillis();
+    if (now - lastTimeoutCheck < TIMEOUT_CHECK_INTERVAL)
+      return;
+    lastTimeoutCheck = now;
+
+    for (SelectionKey key : selector.keys()) {
+      NioConnection connection = (NioConnection) key.attachment();
+      try {
+        if (key.isValid() && connection.isTimedOut(now))
+          connection.timeOut();
+      } catch (Exception e) {
+        connection.close();
+      }
+    }
+  }
+
+  private void closeAll() {
+    for (SelectionKey key : selector.keys())
+      ((NioConnection) key.attachment()).close();
+
+    SocketChannel channel;
+    while ((channel = pendingChannels.poll()) != null) {
+      safeClose(channel);
+      connectionLimiter.release();
+    }
+    safeClose(selector);
+  }
+}
@@ -0,0 +1,60 @@
+package core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class FileRegion extends BodyPart {
+  private final Path path;
+  private final long position;
+  private final long count;
+
+  public FileRegion(Path path, long position, long count) {
+    this.path = path;
+    this.position = position;
+    this.count = count;
+  }
+
+  public FileRegion(Path path) throws IOException {
+    this(path, 0, Files.size(path));
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public long getPosition() {
+    return position;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  @Override
+  public long getLength() {
+    return count;
+  }
+
+  @Override
+  FileTransfer open() throws IOException {
+    return new FileTransfer(path, position, count);
+  }
+
+  byte[] read() throws IOException {
+    try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer content = ByteBuffer.allocate(Math.toIntExact(count));
+      while (content.hasRemaining() && file.read(content, position + content.position()) != -1);
+      return content.array();
+    }
+  }
+
+  @Override
+  void writeTo(OutputStream out) throws IOException {
+    out.write(read());
+  }
+}
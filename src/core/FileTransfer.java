@@ -0,0 +1,38 @@
+package core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+class FileTransfer implements Closeable {
+  private final FileChannel file;
+  private long position;
+  private final long end;
+
+  FileTransfer(Path path, long position, long count) throws IOException {
+    this.file = FileChannel.open(path, StandardOpenOption.READ);
+    this.position = position;
+    this.end = position + count;
+  }
+
+  long transferTo(WritableByteChannel target) throws IOException {
+    long transferred = file.transferTo(position, end - position, target);
+    if (transferred == 0 && position >= file.size())
+      throw new IOException("File was truncated while being sent");
+
+    position += transferred;
+    return transferred;
+  }
+
+  boolean hasRemaining() {
+    return position < end;
+  }
+
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+}
@@ -0,0 +1,220 @@
+package core;
+
+import java.nio.charset.Charset;
+
+import static java.nio.charset.Charset.forName;
+
+public class HttpGrammar {
+
+  private static final char CR = '\r';
+  private static final char LF = '\n';
+  private static final char SP = ' ';
+  private static final char HT = '\t';
+
+  private static final String SEPARATORS = "()<>@,;:\\\"/[]?={} \t";
+  private static final String CHARSET_PARAMETER = "charset=";
+
+  private static final boolean[] TOKEN_CHARS = new boolean[128];
+  private static final boolean[] SEPARATOR_CHARS = new boolean[128];
+
+  static {
+    for (char c = 0x21; c < 0x7F; c++)
+      TOKEN_CHARS[c] = SEPARATORS.indexOf(c) == -1;
+    for (int i = 0; i < SEPARATORS.length(); i++)
+      SEPARATOR_CHARS[SEPARATORS.charAt(i)] = true;
+  }
+
+  private static final int OUTSIDE_QUOTES = 1;
+  private static final int QUOTED = 2;
+  private static final int QUOTED_PAIR = 4;
+  private static final int QUOTED_CR = 8;
+  private static final int QUOTED_CRLF = 16;
+
+  static boolean isTokenChar(char c) {
+    return c < 128 && TOKEN_CHARS[c];
+  }
+
+  static boolean isSeparator(char c) {
+    return c < 128 && SEPARATOR_CHARS[c];
+  }
+
+  static boolean isText(char c) {
+    return c > 0x1F && c != 0x7F;
+  }
+
+  static boolean validateHeader(String header) {
+    int colon = indexOfTokenEnd(header, 0);
+    if (colon == 0 || colon == header.length() || header.charAt(colon) != ':')
+      return false;
+
+    return isTextSequence(header, colon + 1) || isTokenSeparatorOrQuotedStringSequence(header, colon + 1);
+  }
+
+  static boolean validateMethod(String method) {
+    return !method.isEmpty() && indexOfTokenEnd(method, 0) == method.length();
+  }
+
+  static boolean validateHttpVersion(String protocol) {
+    if (!protocol.startsWith("HTTP/"))
+      return false;
+
+    int dot = indexOfDigitsEnd(protocol, 5);
+    if (dot == 5 || dot == protocol.length() || protocol.charAt(dot) != '.')
+      return false;
+
+    int end = indexOfDigitsEnd(protocol, dot + 1);
+    return end != dot + 1 && end == protocol.length();
+  }
+
+  static boolean validateRequestLineFormat(String requestLine) {
+    int firstSpace = requestLine.indexOf(SP);
+    int secondSpace = requestLine.indexOf(SP, firstSpace + 1);
+    return firstSpace > 0 &&
+      secondSpace > firstSpace + 1 &&
+      secondSpace < requestLine.length() - 1 &&
+      requestLine.indexOf(SP, secondSpace + 1) == -1;
+  }
+
+  static String replaceMultipleLWSWithSingleSpace(String headers) {
+    StringBuilder result = null;
+    int copiedUpTo = 0;
+    int length = headers.length();
+
+    for (int i = 0; i < length; ) {
+      int end = indexOfLWSEnd(headers, i);
+      if (end == i) {
+        i++;
+        continue;
+      }
+
+      if (end - i != 1 || headers.charAt(i) != SP) {
+        if (result == null)
+          result = new StringBuilder(length);
+        result.append(headers, copiedUpTo, i).append(SP);
+        copiedUpTo = end;
+      }
+      i = end;
+    }
+
+    if (result == null)
+      return headers;
+    return result.append(headers, copiedUpTo, length).toString();
+  }
+
+  static Charset getParsedBodyCharset(String contentType) {
+    if (contentType == null || containsLineTerminator(contentType))
+      return null;
+
+    for (int semicolon = contentType.lastIndexOf(';'); semicolon != -1; semicolon = contentType.lastIndexOf(';', semicolon - 1)) {
+      int parameter = indexOfLWSEnd(contentType, semicolon + 1);
+      if (!contentType.startsWith(CHARSET_PARAMETER, parameter))
+        continue;
+
+      int start = parameter + CHARSET_PARAMETER.length();
+      int end = indexOfTokenEnd(contentType, start);
+      if (end == start)
+        continue;
+
+      try {
+        return forName(contentType.substring(start, end));
+      } catch (Exception e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  private static int indexOfTokenEnd(String value, int from) {
+    int i = from;
+    while (i < value.length() && isTokenChar(value.charAt(i)))
+      i++;
+    return i;
+  }
+
+  private static int indexOfDigitsEnd(String value, int from) {
+    int i = from;
+    while (i < value.length() && value.charAt(i) >= '0' && value.charAt(i) <= '9')
+      i++;
+    return i;
+  }
+
+  private static int indexOfLWSEnd(String value, int from) {
+    int i = from;
+    int length = value.length();
+    while (true) {
+      int next = i;
+      if (next + 2 < length && value.charAt(next) == CR && value.charAt(next + 1) == LF)
+        next += 2;
+      if (next == length || (value.charAt(next) != SP && value.charAt(next) != HT))
+        return i;
+      while (next < length && (value.charAt(next) == SP || value.charAt(next) == HT))
+        next++;
+      i = next;
+    }
+  }
+
+  private static boolean isTextSequence(String value, int from) {
+    int length = value.length();
+    for (int i = from; i < length; i++) {
+      char c = value.charAt(i);
+      if (isText(c) || c == HT)
+        continue;
+
+      if (c != CR || i + 2 >= length || value.charAt(i + 1) != LF)
+        return false;
+
+      char next = value.charAt(i + 2);
+      if (next != SP && next != HT)
+        return false;
+      i += 2;
+    }
+    return true;
+  }
+
+  private static boolean isTokenSeparatorOrQuotedStringSequence(String value, int from) {
+    int states = OUTSIDE_QUOTES;
+    for (int i = from; i < value.length() && states != 0; i++) {
+      char c = value.charAt(i);
+      int next = 0;
+
+      if ((states & OUTSIDE_QUOTES) != 0) {
+        if (isTokenChar(c) || isSeparator(c))
+          next |= OUTSIDE_QUOTES;
+        if (c == '"')
+          next |= QUOTED;
+      }
+
+      if ((states & QUOTED) != 0) {
+        if (c == '"')
+          next |= OUTSIDE_QUOTES;
+        else if (c == CR)
+          next |= QUOTED_CR;
+        else if (isText(c) || c == HT)
+          next |= QUOTED;
+        if (c == '\\')
+          next |= QUOTED_PAIR;
+      }
+
+      if ((states & QUOTED_PAIR) != 0 && c < 128)
+        next |= QUOTED;
+
+      if ((states & QUOTED_CR) != 0 && c == LF)
+        next |= QUOTED_CRLF;
+
+      if ((states & QUOTED_CRLF) != 0 && (c == SP || c == HT))
+        next |= QUOTED;
+
+      states = next;
+    }
+    return (states & OUTSIDE_QUOTES) != 0;
+  }
+
+  private static boolean containsLineTerminator(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == LF || c == CR || c == '\u0085' || c == '\u2028' || c == '\u2029')
+        return true;
+    }
+    return false;
+  }
+}
@@ -1,17 +1,14 @@
 package core;
 
-import util.LinkedCaseInsensitiveMap;
+import util.HttpHeaders;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
-import java.util.regex.Pattern;
 
 public abstract class HttpMessage {
   public String requestMethod;
   public String httpVersion;
-  public Map<String, String> headers = new LinkedCaseInsensitiveMap();
-  String body;
+  public HttpHeaders headers = new HttpHeaders();
   public Charset bodyCharset = StandardCharsets.ISO_8859_1;
   public HttpStatusCode responseStatusCode;
 
@@ -23,22 +20,22 @@ public abstract class HttpMessage {
     this.headers.put(header, value);
   }
 
-  public int calculateContentLength() {
-    return body == null ? 0 : body.getBytes(bodyCharset).length;
+  public void addHeader(String header, String value) {
+    this.headers.add(header, value);
   }
 
-  public String getBody() {
-    return body;
-  }
+  public abstract long calculateContentLength();
 
-  public void setBody(String body) {
-    this.body = body;
-  }
+  public abstract String getBody();
+
+  public abstract void setBody(String body);
+
+  abstract boolean hasBody();
 
   public boolean contentHeadersAreCorrect() {
-    if (body == null && !"HEAD".equals(requestMethod))
+    if (!hasBody() && !"HEAD".equals(requestMethod))
       for(String key : headers.keySet())
-        if (Pattern.compile("Content-.*", Pattern.CASE_INSENSITIVE).matcher(key).matches())
+        if (key.regionMatches(true, 0, "Content-", 0, 8))
           return false;
 
     return true;
@@ -3,56 +3,266 @@ package core;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
+import static core.HttpStatusCode.BAD_REQUEST;
+import static core.HttpStatusCode.REQUEST_HEADER_FIELDS_TOO_LARGE;
 import static core.HttpStatusCode.REQUEST_TIMEOUT;
 
 public class HttpMessageReader {
 
-  private static final byte[] NEWLINE = {(byte) 13, (byte) 10};
+  private static final byte CR = 13;
+  private static final byte LF = 10;
+  private static final int INITIAL_BUFFER_SIZE = 4096;
+
+  private final InputStream in;
+  private final int maximumHeadersSize;
+  private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+  private int position;
+  private int limit;
+  private long discarded;
+  private long headersScanStart = -1;
+  private long headersScanEnd;
+  private long dataTime;
+
+  HttpMessageReader(InputStream in, int maximumHeadersSize) {
+    this.in = in;
+    this.maximumHeadersSize = maximumHeadersSize;
+  }
+
+  String readExactNumberOfBytes(int contentLength, Charset charset) {
+    byte[] bytes = new byte[contentLength];
+    int bytesRead = Math.min(contentLength, limit - position);
+    System.arraycopy(buffer, position, bytes, 0, bytesRead);
+    position += bytesRead;
 
-  static String readExactNumberOfBytes(InputStream in, int contentLength, Charset charset) {
-    byte[] buffer = new byte[contentLength];
-    int bytesActuallyRead;
     try {
-      bytesActuallyRead = in.read(buffer, 0, contentLength);
+      while (bytesRead < contentLength) {
+        int count = in.read(bytes, bytesRead, contentLength - bytesRead);
+        if (count == -1) break;
+        bytesRead += count;
+      }
     } catch (SocketTimeoutException e) {
       throw new HttpError(REQUEST_TIMEOUT);
     } catch (IOException e) {
       throw new RuntimeException("Failed to read body from input stream");
     }
-    return new String(buffer, 0, bytesActuallyRead, charset);
+    return new String(bytes, 0, bytesRead, charset);
   }
 
-  static String readStartLineAndHeaders(InputStream in) {
-    byte[] bytes = new byte[0];
-    int byteRead;
+  String readStartLineAndHeaders() {
     try {
-      while ((byteRead = in.read()) != -1) {
-        bytes = Arrays.copyOf(bytes, bytes.length + 1);
-        bytes[bytes.length - 1] = (byte) byteRead;
-        bytes = Arrays.equals(bytes, NEWLINE) ? new byte[0] : bytes;
-        if (isEndOfHeaders(bytes)) break;
+      skipEmptyLines();
+
+      int searchFrom = position;
+      while (true) {
+        int end = indexOfEndOfHeaders(searchFrom);
+        if (end != -1) {
+          if (end - position > maximumHeadersSize)
+            throw new HttpError(REQUEST_HEADER_FIELDS_TOO_LARGE);
+          String result = new String(buffer, position, end - position, StandardCharsets.ISO_8859_1);
+          position = end + 4;
+          return result;
+        }
+        if (limit - position > maximumHeadersSize)
+          throw new HttpError(REQUEST_HEADER_FIELDS_TOO_LARGE);
+
+        searchFrom = Math.max(position, limit - 3);
+        int offset = searchFrom - position;
+        if (fill() == -1)
+          return takeRemaining();
+        searchFrom = position + offset;
       }
     } catch (SocketTimeoutException e) {
       throw new HttpError(REQUEST_TIMEOUT);
     } catch (IOException e) {
       throw new RuntimeException("Failed to read start-line and headers from input stream");
     }
+  }
+
+  int read(byte[] bytes, int offset, int length) throws IOException {
+    try {
+      if (position == limit) {
+        if (in == null)
+          return -1;
+        if (length >= buffer.length)
+          return in.read(bytes, offset, length);
+        if (fill() == -1)
+          return -1;
+      }
+
+      int count = Math.min(length, limit - position);
+      System.arraycopy(buffer, position, bytes, offset, count);
+      position += count;
+      return count;
+    } catch (SocketTimeoutException e) {
+      throw new HttpError(REQUEST_TIMEOUT);
+    }
+  }
+
+  String readLine(int maximumLength) {
+    try {
+      int searchFrom = position;
+      while (true) {
+        int end = indexOfLineEnd(searchFrom);
+        if (end != -1) {
+          if (end - position > maximumLength)
+            throw new HttpError(BAD_REQUEST);
+          String result = new String(buffer, position, end - position, StandardCharsets.ISO_8859_1);
+          position = end + 2;
+          return result;
+        }
+        if (limit - position > maximumLength)
+          throw new HttpError(BAD_REQUEST);
+
+        int offset = Math.max(0, limit - 1 - position);
+        if (in == null || fill() == -1)
+          return null;
+        searchFrom = position + offset;
+      }
+    } catch (SocketTimeoutException e) {
+      throw new HttpError(REQUEST_TIMEOUT);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read line from input stream");
+    }
+  }
+
+  boolean hasBufferedChunkedBody() {
+    int start = position;
+    while (true) {
+      int end = indexOfLineEnd(start);
+      if (end == -1)
+        return false;
+      long size = ChunkedRequestBody.parseChunkSize(new String(buffer, start, end - start, StandardCharsets.ISO_8859_1));
+      if (size == -1)
+        return true;
+      start = end + 2;
+
+      if (size == 0) {
+        for (end = indexOfLineEnd(start); end != -1; end = indexOfLineEnd(start)) {
+          if (end == start)
+            return true;
+          start = end + 2;
+        }
+        return false;
+      }
+
+      if (limit - start < size + 2)
+        return false;
+      start += (int) size + 2;
+    }
+  }
 
-    if (bytes.length >= 4)
-      bytes = Arrays.copyOfRange(bytes, 0, bytes.length-4);
-    return new String(bytes, StandardCharsets.ISO_8859_1);
+  long skipBuffered(long count) {
+    int skipped = (int) Math.max(0, Math.min(count, limit - position));
+    position += skipped;
+    return skipped;
   }
 
-  private static boolean isEndOfHeaders(byte[] bytes) {
-    int size = bytes.length;
-    return size>=4 &&
-      NEWLINE[0] == bytes[size-4] &&
-      NEWLINE[1] == bytes[size-3] &&
-      NEWLINE[0] == bytes[size-2] &&
-      NEWLINE[1] == bytes[size-1];
+  boolean awaitData() throws IOException {
+    return position < limit || fill() != -1;
+  }
+
+  int readFrom(ReadableByteChannel channel) throws IOException {
+    boolean empty = position == limit;
+    makeRoom();
+    int count = channel.read(ByteBuffer.wrap(buffer, limit, buffer.length - limit));
+    if (count > 0)
+      received(count, empty);
+    return count;
+  }
+
+  long getDataTime() {
+    return dataTime;
+  }
+
+  int bufferedBytes() {
+    return limit - position;
+  }
+
+  int bufferSize() {
+    return buffer.length;
+  }
+
+  boolean hasBufferedHeaders() {
+    int start = position;
+    while (limit - start >= 2 && buffer[start] == CR && buffer[start + 1] == LF)
+      start += 2;
+
+    if (discarded + start != headersScanStart) {
+      headersScanStart = discarded + start;
+      headersScanEnd = headersScanStart;
+    }
+    if (indexOfEndOfHeaders((int) (headersScanEnd - discarded)) != -1)
+      return true;
+    headersScanEnd = discarded + Math.max(start, limit - 3);
+    return false;
+  }
+
+  private void skipEmptyLines() throws IOException {
+    while (true) {
+      while (limit - position < 2)
+        if (fill() == -1) return;
+
+      if (buffer[position] != CR || buffer[position + 1] != LF) return;
+      position += 2;
+    }
+  }
+
+  private int indexOfLineEnd(int from) {
+    for (int i = from; i < limit - 1; i++)
+      if (buffer[i] == CR && buffer[i + 1] == LF)
+        return i;
+    return -1;
+  }
+
+  private int indexOfEndOfHeaders(int from) {
+    for (int i = from; i < limit - 3; i++)
+      if (buffer[i] == CR && buffer[i + 1] == LF && buffer[i + 2] == CR && buffer[i + 3] == LF)
+        return i;
+    return -1;
+  }
+
+  private String takeRemaining() {
+    String result = new String(buffer, position, limit - position, StandardCharsets.ISO_8859_1);
+    position = limit;
+    return result;
+  }
+
+  private int fill() throws IOException {
+    boolean empty = position == limit;
+    makeRoom();
+    int count = in.read(buffer, limit, buffer.length - limit);
+    if (count > 0)
+      received(count, empty);
+    return count;
+  }
+
+  private void received(int count, boolean empty) {
+    limit += count;
+    if (empty)
+      dataTime = System.nanoTime();
+  }
+
+  private void makeRoom() {
+    if (position == limit) {
+      discarded += position;
+      position = 0;
+      limit = 0;
+      if (buffer.length > INITIAL_BUFFER_SIZE)
+        buffer = new byte[INITIAL_BUFFER_SIZE];
+    } else if (limit == buffer.length && position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      discarded += position;
+      limit -= position;
+      position = 0;
+    }
+
+    if (limit == buffer.length)
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
   }
 }
@@ -3,13 +3,19 @@ package core;
 public enum HttpStatusCode {
 
     OK (200, "OK"),
+    PARTIAL_CONTENT (206, "Partial Content"),
+    NOT_MODIFIED (304, "Not Modified"),
     BAD_REQUEST (400, "Bad Request"),
     FORBIDDEN (403, "Forbidden"),
     NOT_FOUND (404, "Not Found"),
     REQUEST_TIMEOUT (408, "Request Timeout"),
+    REQUEST_ENTITY_TOO_LARGE (413, "Request Entity Too Large"),
     REQUEST_URI_TOO_LONG (414, "Request-URI Too Long"),
+    REQUESTED_RANGE_NOT_SATISFIABLE (416, "Requested Range Not Satisfiable"),
+    REQUEST_HEADER_FIELDS_TOO_LARGE (431, "Request Header Fields Too Large"),
     INTERNAL_SERVER_ERROR (500, "Internal Server Error"),
     NOT_IMPLEMENTED (501, "Not Implemented"),
+    SERVICE_UNAVAILABLE (503, "Service Unavailable"),
     HTTP_VERSION_NOT_SUPPORTED (505, "HTTP Version Not Supported");
 
     private final int code;
@@ -20,6 +26,14 @@ public enum HttpStatusCode {
       this.reasonPhrase = reasonPhrase;
     }
 
+    public int getCode() {
+      return code;
+    }
+
+    public boolean allowsBody() {
+      return code >= 200 && code != 204 && code != 304;
+    }
+
     @Override
     public String toString() {
       return code + " " + reasonPhrase;
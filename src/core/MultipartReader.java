@@ -0,0 +1,240 @@
+package core;
+
+import util.HttpHeaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static core.HttpStatusCode.BAD_REQUEST;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class MultipartReader {
+  private static final int BUFFER_SIZE = 8192;
+  private static final int MAXIMUM_BOUNDARY_LENGTH = 70;
+
+  private final InputStream in;
+  private final byte[] delimiter;
+  private final byte[] buffer;
+  private final int maximumHeadersSize;
+  private final PartStream partStream = new PartStream();
+  private int position;
+  private int limit;
+  private int delimiterIndex;
+  private boolean delimiterSearched;
+  private boolean partEnded;
+  private boolean finished;
+
+  public MultipartReader(InputStream in, String boundary, int maximumHeadersSize) {
+    if (boundary == null || boundary.isEmpty() || boundary.length() > MAXIMUM_BOUNDARY_LENGTH)
+      throw new HttpError(BAD_REQUEST);
+
+    this.in = in;
+    this.delimiter = ("\r\n--" + boundary).getBytes(ISO_8859_1);
+    this.buffer = new byte[BUFFER_SIZE];
+    this.maximumHeadersSize = maximumHeadersSize;
+    buffer[limit++] = '\r';
+    buffer[limit++] = '\n';
+  }
+
+  public HttpHeaders nextPart() throws IOException {
+    if (finished)
+      return null;
+
+    while (!partEnded)
+      partStream.skip(Long.MAX_VALUE);
+    position += delimiter.length;
+
+    if (!ensureBuffered(2))
+      throw new HttpError(BAD_REQUEST);
+    if (buffer[position] == '-' && buffer[position + 1] == '-') {
+      finished = true;
+      return null;
+    }
+
+    String padding = readLine(BUFFER_SIZE);
+    if (!padding.trim().isEmpty())
+      throw new HttpError(BAD_REQUEST);
+
+    HttpHeaders headers = new HttpHeaders();
+    int size = 0;
+    for (String line = readLine(maximumHeadersSize); !line.isEmpty(); line = readLine(maximumHeadersSize - size)) {
+      int colon = line.indexOf(':');
+      if (colon < 1)
+        throw new HttpError(BAD_REQUEST);
+
+      size += line.length() + 2;
+      headers.add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+    }
+
+    partEnded = false;
+    delimiterSearched = false;
+    return headers;
+  }
+
+  public InputStream getPartStream() {
+    return partStream;
+  }
+
+  static String getBoundary(String contentType) {
+    return getParameter(contentType, "boundary");
+  }
+
+  static String getParameter(String header, String name) {
+    if (header == null)
+      return null;
+
+    int index = header.indexOf(';');
+    while (index != -1 && index < header.length()) {
+      int start = index + 1;
+      int equals = header.indexOf('=', start);
+      if (equals == -1)
+        return null;
+
+      String parameter = header.substring(start, equals).trim();
+      StringBuilder value = new StringBuilder();
+      int end = equals + 1;
+      while (end < header.length() && header.charAt(end) == ' ')
+        end++;
+
+      if (end < header.length() && header.charAt(end) == '"') {
+        for (end++; end < header.length() && header.charAt(end) != '"'; end++) {
+          if (header.charAt(end) == '\\' && end + 1 < header.length())
+            end++;
+          value.append(header.charAt(end));
+        }
+        index = header.indexOf(';', end);
+      } else {
+        index = header.indexOf(';', end);
+        value.append(header, end, index == -1 ? header.length() : index);
+      }
+
+      if (parameter.equalsIgnoreCase(name))
+        return value.toString().trim();
+    }
+    return null;
+  }
+
+  private String readLine(int maximumLength) throws IOException {
+    int searchFrom = position;
+    while (true) {
+      for (int i = searchFrom; i < limit - 1; i++) {
+        if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+          if (i - position > maximumLength)
+            throw new HttpError(BAD_REQUEST);
+          String line = new String(buffer, position, i - position, UTF_8);
+          position = i + 2;
+          return line;
+        }
+      }
+
+      if (limit - position > maximumLength || limit - position == buffer.length)
+        throw new HttpError(BAD_REQUEST);
+      int offset = Math.max(0, limit - 1 - position);
+      if (fill() == -1)
+        throw new HttpError(BAD_REQUEST);
+      searchFrom = position + offset;
+    }
+  }
+
+  private boolean ensureBuffered(int count) throws IOException {
+    while (limit - position < count)
+      if (fill() == -1)
+        return false;
+    return true;
+  }
+
+  private int fill() throws IOException {
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      limit -= position;
+      position = 0;
+    }
+
+    delimiterSearched = false;
+    int count = in.read(buffer, limit, buffer.length - limit);
+    if (count > 0)
+      limit += count;
+    return count;
+  }
+
+  private int findDelimiter() {
+    if (!delimiterSearched) {
+      delimiterIndex = indexOfDelimiter();
+      delimiterSearched = true;
+    }
+    return delimiterIndex;
+  }
+
+  private int indexOfDelimiter() {
+    byte first = delimiter[0];
+    for (int i = position; i <= limit - delimiter.length; i++) {
+      if (buffer[i] != first)
+        continue;
+
+      int j = 1;
+      while (j < delimiter.length && buffer[i + j] == delimiter[j])
+        j++;
+      if (j == delimiter.length)
+        return i;
+    }
+    return -1;
+  }
+
+  private class PartStream extends InputStream {
+    private final byte[] single = new byte[1];
+
+    @Override
+    public int read() throws IOException {
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (length == 0)
+        return 0;
+
+      int count = Math.min(length, awaitAvailable());
+      if (count == 0)
+        return -1;
+      System.arraycopy(buffer, position, bytes, offset, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+      if (count <= 0)
+        return 0;
+
+      int skipped = (int) Math.min(count, awaitAvailable());
+      position += skipped;
+      return skipped;
+    }
+
+    private int awaitAvailable() throws IOException {
+      while (!partEnded) {
+        int available = available();
+        if (available > 0)
+          return available;
+
+        if (findDelimiter() == position)
+          partEnded = true;
+        else if (fill() == -1)
+          throw new HttpError(BAD_REQUEST);
+      }
+      return 0;
+    }
+
+    @Override
+    public int available() {
+      if (partEnded)
+        return 0;
+
+      int index = findDelimiter();
+      if (index != -1)
+        return index - position;
+      return Math.max(0, limit - position - delimiter.length + 1);
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package core;
+
+import events.ResponseWriteEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static core.HttpStatusCode.REQUEST_TIMEOUT;
+import static core.RequestProcessor.hasConnectionToken;
+import static util.Helper.safeClose;
+
+public class NioConnection {
+  private final SocketChannel channel;
+  private final SelectionKey key;
+  private final Configuration configuration;
+  private final RequestProcessor processor;
+  private final HttpMessageReader reader;
+  private final ConnectionLimiter connectionLimiter;
+  private final Deque<Object> output = new ArrayDeque<>();
+  private RequestParser parser;
+  private int requestsServed;
+  private boolean closeAfterWrite;
+  private long deadline;
+  private boolean closed;
+
+  NioConnection(SocketChannel channel, Selector selector, Configuration configuration, Router router, ConnectionLimiter connectionLimiter, ServerMetrics metrics, RequestLog requestLog) throws IOException {
+    this.channel = channel;
+    this.configuration = configuration;
+    this.connectionLimiter = connectionLimiter;
+    this.processor = new RequestProcessor(channel.socket(), configuration, router, metrics, requestLog);
+    this.reader = new HttpMessageReader(null, configuration.getMaximumHeadersSize());
+    this.key = channel.register(selector, SelectionKey.OP_READ, this);
+    this.deadline = System.currentTimeMillis() + configuration.getRequestTimeOut();
+  }
+
+  void read() throws IOException {
+    boolean endOfStream = reader.readFrom(channel) == -1;
+    deadline = System.currentTimeMillis() + configuration.getRequestTimeOut();
+
+    processBufferedRequests();
+    if (endOfStream)
+      closeAfterWrite = true;
+    write();
+  }
+
+  void write() throws IOException {
+    if (!output.isEmpty()) {
+      flushOutput();
+      deadline = System.currentTimeMillis() + configuration.getRequestTimeOut();
+    }
+
+    if (!output.isEmpty()) {
+      key.interestOps(SelectionKey.OP_WRITE);
+    } else if (closeAfterWrite) {
+      close();
+    } else {
+      key.interestOps(SelectionKey.OP_READ);
+      if (!isInsideRequest())
+        deadline = System.currentTimeMillis() + configuration.getKeepAliveTimeOut();
+    }
+  }
+
+  boolean isTimedOut(long now) {
+    return now >= deadline;
+  }
+
+  void timeOut() throws IOException {
+    if (!output.isEmpty() || (requestsServed > 0 && !isInsideRequest())) {
+      close();
+      return;
+    }
+
+    Request request = parser == null ? new Request() : parser.request;
+    request.responseStatusCode = REQUEST_TIMEOUT;
+    respond(request);
+    write();
+  }
+
+  void close() {
+    if (closed)
+      return;
+
+    closed = true;
+    key.cancel();
+    safeClose(channel);
+    for (Object part : output)
+      if (part instanceof FileTransfer)
+        safeClose((FileTransfer) part);
+      else if (part instanceof Request)
+        ((Request) part).deleteParts();
+    output.clear();
+    connectionLimiter.release();
+    RequestProcessor.recordClose(channel.socket(), requestsServed);
+  }
+
+  private void flushOutput() throws IOException {
+    while (!output.isEmpty()) {
+      if (output.peek() instanceof Request) {
+        ((Request) output.poll()).deleteParts();
+        continue;
+      }
+
+      if (output.peek() instanceof FileTransfer) {
+        FileTransfer file = (FileTransfer) output.peek();
+        file.transferTo(channel);
+        if (file.hasRemaining())
+          return;
+        safeClose(file);
+        output.poll();
+        continue;
+      }
+
+      List<ByteBuffer> buffers = new ArrayList<>();
+      for (Object part : output) {
+        if (!(part instanceof ByteBuffer))
+          break;
+        buffers.add((ByteBuffer) part);
+      }
+
+      channel.write(buffers.toArray(new ByteBuffer[buffers.size()]));
+      while (!output.isEmpty() && output.peek() instanceof ByteBuffer && !((ByteBuffer) output.peek()).hasRemaining())
+        output.poll();
+      if (!output.isEmpty() && output.peek() instanceof ByteBuffer)
+        return;
+    }
+  }
+
+  private boolean isInsideRequest() {
+    return parser != null || reader.bufferedBytes() > 0;
+  }
+
+  private void processBufferedRequests() throws IOException {
+    while (!closeAfterWrite) {
+      if (parser == null) {
+        if (!reader.hasBufferedHeaders() && reader.bufferedBytes() <= configuration.getMaximumHeadersSize())
+          return;
+
+        parser = new RequestParser(configuration);
+        if (!parser.setStartLineAndHeaders(reader)) {
+          respond(parser.request);
+          return;
+        }
+      }
+
+      if (!parser.hasBufferedContent(reader))
+        return;
+
+      parser.request.bodyReadTime = System.nanoTime();
+      respond(parser.setContent(reader));
+    }
+  }
+
+  private void respond(Request request) throws IOException {
+    parser = null;
+    requestsServed++;
+
+    Response response = processor.respond(request, requestsServed);
+    closeAfterWrite = hasConnectionToken(response, "close");
+    ResponseWriteEvent event = new ResponseWriteEvent();
+    event.begin();
+    byte[] headerBlock = response.generateHeaderBlock();
+    output.add(ByteBuffer.wrap(headerBlock));
+    try {
+      output.addAll(response.openBody());
+    } finally {
+      if (!request.parts.isEmpty())
+        output.add(request);
+    }
+    RequestProcessor.recordWrite(event, response, headerBlock.length + response.calculateContentLength() + response.getStreamedLength());
+    processor.record(request, response);
+  }
+}
@@ -0,0 +1,5 @@
+package core;
+
+public enum OverloadPolicy {
+  SERVICE_UNAVAILABLE, STOP_ACCEPTING
+}
@@ -0,0 +1,114 @@
+package core;
+
+import util.HttpHeaders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static core.HttpGrammar.getParsedBodyCharset;
+import static core.HttpStatusCode.REQUEST_ENTITY_TOO_LARGE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static util.HttpHeaders.CONTENT_TYPE;
+
+public class Part {
+  private static final int COPY_BUFFER_SIZE = 8192;
+
+  private final HttpHeaders headers;
+  private byte[] content;
+  private Path file;
+  private boolean moved;
+  private long size;
+
+  Part(HttpHeaders headers) {
+    this.headers = headers;
+  }
+
+  public HttpHeaders getHeaders() {
+    return headers;
+  }
+
+  public String getName() {
+    return MultipartReader.getParameter(headers.get("Content-Disposition"), "name");
+  }
+
+  public String getFileName() {
+    return MultipartReader.getParameter(headers.get("Content-Disposition"), "filename");
+  }
+
+  public String getContentType() {
+    return headers.get(CONTENT_TYPE);
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  public boolean isInMemory() {
+    return file == null;
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  public InputStream getInputStream() throws IOException {
+    return file == null ? new ByteArrayInputStream(content) : Files.newInputStream(file);
+  }
+
+  public String getString() throws IOException {
+    Charset charset = getParsedBodyCharset(getContentType());
+    return new String(file == null ? content : Files.readAllBytes(file), charset == null ? UTF_8 : charset);
+  }
+
+  public void moveTo(Path target) throws IOException {
+    if (file == null) {
+      Files.write(target, content);
+    } else {
+      Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+      file = target;
+      moved = true;
+    }
+  }
+
+  void delete() {
+    try {
+      if (file != null && !moved)
+        Files.deleteIfExists(file);
+    } catch (IOException ignored) {}
+  }
+
+  void write(InputStream in, int memoryThreshold, long maximumSize) throws IOException {
+    ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    OutputStream out = memory;
+    byte[] chunk = new byte[COPY_BUFFER_SIZE];
+    try {
+      for (int count = in.read(chunk); count != -1; count = in.read(chunk)) {
+        size += count;
+        if (size > maximumSize)
+          throw new HttpError(REQUEST_ENTITY_TOO_LARGE);
+
+        if (file == null && size > memoryThreshold) {
+          file = Files.createTempFile("httpserver-part", ".tmp");
+          out = Files.newOutputStream(file);
+          memory.writeTo(out);
+          memory = null;
+        }
+        out.write(chunk, 0, count);
+      }
+      if (file == null)
+        content = memory.toByteArray();
+    } catch (IOException | RuntimeException e) {
+      out.close();
+      delete();
+      throw e;
+    }
+    out.close();
+  }
+}
@@ -1,11 +1,102 @@
 package core;
 
+import util.HttpHeaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 public class Request extends HttpMessage {
   public URI requestURI;
   public Map<String, LinkedList<String>> parameters = new LinkedHashMap<>();
+  public Map<String, String> pathParameters = new LinkedHashMap<>();
+  public List<Part> parts = new ArrayList<>();
+  String route;
+  long acceptTime;
+  long firstByteTime;
+  long headersReadTime;
+  long bodyReadTime;
+  long parsedTime;
+  long handlerStartTime;
+  long handlerEndTime;
+  long writtenTime;
+  String body;
+  RequestBody bodyStream;
+
+  @Override
+  public long calculateContentLength() {
+    if (body == null && bodyStream != null)
+      return bodyStream.getLength();
+    return body == null ? 0 : body.getBytes(bodyCharset).length;
+  }
+
+  @Override
+  public String getBody() {
+    if (body == null && bodyStream != null) {
+      if (bodyStream.isStarted())
+        throw new IllegalStateException("Request body has already been read as a stream");
+      try {
+        body = new String(bodyStream.readAllBytes(), bodyCharset);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return body;
+  }
+
+  @Override
+  public void setBody(String body) {
+    this.body = body;
+    this.bodyStream = null;
+  }
+
+  public InputStream getBodyStream() {
+    return bodyStream;
+  }
+
+  String getTarget() {
+    if (requestURI == null)
+      return null;
+    String query = requestURI.getRawQuery();
+    return query == null ? requestURI.getRawPath() : requestURI.getRawPath() + "?" + query;
+  }
+
+  public Part getPart(String name) {
+    for (Part part : parts)
+      if (name.equals(part.getName()))
+        return part;
+    return null;
+  }
+
+  void deleteParts() {
+    for (Part part : parts)
+      part.delete();
+  }
+
+  public HttpHeaders getTrailers() {
+    if (bodyStream instanceof ChunkedRequestBody)
+      return ((ChunkedRequestBody) bodyStream).getTrailers();
+    return new HttpHeaders();
+  }
+
+  public ReadableByteChannel getBodyChannel() {
+    return bodyStream == null ? null : Channels.newChannel(bodyStream);
+  }
+
+  @Override
+  boolean hasBody() {
+    return body != null || bodyStream != null;
+  }
+
+  boolean discardBody(long maximumUnbufferedBytes) throws IOException {
+    return bodyStream == null || bodyStream.discard(maximumUnbufferedBytes);
+  }
 }
@@ -0,0 +1,91 @@
+package core;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static core.HttpStatusCode.BAD_REQUEST;
+
+public class RequestBody extends InputStream {
+  static final int SKIP_BUFFER_SIZE = 8192;
+
+  private final HttpMessageReader reader;
+  private final long length;
+  private long remaining;
+  private final byte[] single = new byte[1];
+  private byte[] skipBuffer;
+  long finishedTime;
+
+  RequestBody(HttpMessageReader reader, long length) {
+    this.reader = reader;
+    this.length = length;
+    this.remaining = length;
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  public long getRemaining() {
+    return remaining;
+  }
+
+  public boolean isStarted() {
+    return remaining < length;
+  }
+
+  @Override
+  public int read() throws IOException {
+    return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int count) throws IOException {
+    if (count == 0)
+      return 0;
+    if (remaining == 0)
+      return -1;
+
+    int read = reader.read(bytes, offset, (int) Math.min(count, remaining));
+    if (read == -1)
+      throw new HttpError(BAD_REQUEST);
+    consume(read);
+    return read;
+  }
+
+  @Override
+  public long skip(long count) throws IOException {
+    long skipped = reader.skipBuffered(Math.min(count, remaining));
+    consume(skipped);
+    if (skipped > 0 || count <= 0 || remaining == 0)
+      return skipped;
+
+    return Math.max(0, read(getSkipBuffer(), 0, (int) Math.min(SKIP_BUFFER_SIZE, count)));
+  }
+
+  private void consume(long count) {
+    remaining -= count;
+    if (remaining == 0 && count > 0)
+      finishedTime = System.nanoTime();
+  }
+
+  byte[] getSkipBuffer() {
+    if (skipBuffer == null)
+      skipBuffer = new byte[SKIP_BUFFER_SIZE];
+    return skipBuffer;
+  }
+
+  @Override
+  public int available() {
+    return (int) Math.min(remaining, reader.bufferedBytes());
+  }
+
+  boolean discard(long maximumUnbufferedBytes) throws IOException {
+    consume(reader.skipBuffered(remaining));
+    if (remaining > maximumUnbufferedBytes)
+      return false;
+
+    while (remaining > 0)
+      skip(remaining);
+    return true;
+  }
+}
@@ -0,0 +1,131 @@
+package core;
+
+import log.AccessLog;
+import log.LogFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Locale;
+
+import static util.HttpHeaders.CONTENT_LENGTH;
+import static util.HttpHeaders.REFERER;
+import static util.HttpHeaders.USER_AGENT;
+
+/**
+ * Writes finished requests to the access log and, when they took longer than slowRequestThreshold from
+ * their first byte to their last written byte, to the slow request log with every phase timestamp given
+ * in milliseconds relative to the first byte.
+ */
+class RequestLog implements Closeable {
+  private static final double NANOSECONDS_PER_MILLISECOND = 1e6;
+
+  private final AccessLog accessLog;
+  private final AccessLog slowLog;
+  private final long slowRequestThreshold;
+
+  RequestLog(AccessLog accessLog, AccessLog slowLog, long slowRequestThreshold) {
+    this.accessLog = accessLog;
+    this.slowLog = slowLog;
+    this.slowRequestThreshold = slowRequestThreshold;
+  }
+
+  static RequestLog open(Configuration configuration) throws IOException {
+    if (configuration.getAccessLogPath() == null && configuration.getSlowRequestLogPath() == null)
+      return null;
+
+    AccessLog accessLog = open(configuration, configuration.getAccessLogPath(), configuration.getAccessLogFormat());
+    try {
+      AccessLog slowLog = open(configuration, configuration.getSlowRequestLogPath(), LogFormat.COMMON);
+      return new RequestLog(accessLog, slowLog, configuration.getSlowRequestThreshold() * 1_000_000L);
+    } catch (IOException e) {
+      if (accessLog != null)
+        accessLog.close();
+      throw e;
+    }
+  }
+
+  private static AccessLog open(Configuration configuration, String path, LogFormat format) throws IOException {
+    if (path == null)
+      return null;
+
+    return new AccessLog(Paths.get(path), format, configuration.getAccessLogBufferSize(), configuration.getAccessLogOverflowPolicy(),
+      configuration.getAccessLogMaximumFileSize(), configuration.getAccessLogMaximumFiles());
+  }
+
+  void record(Request request, Response response, InetAddress address) {
+    if (accessLog != null) {
+      long time = System.currentTimeMillis();
+      if (request.firstByteTime != 0)
+        time -= (request.writtenTime - request.firstByteTime) / 1_000_000;
+      accessLog.log(address, time, request.requestMethod, request.getTarget(), request.httpVersion, getStatus(response),
+        getBodyLength(request, response), request.getHeader(REFERER), request.getHeader(USER_AGENT));
+    }
+
+    if (slowLog != null && request.firstByteTime != 0 && request.writtenTime - request.firstByteTime >= slowRequestThreshold)
+      slowLog.write(formatSlowRequest(request, response, address));
+  }
+
+  long getDroppedRecords() {
+    return (accessLog == null ? 0 : accessLog.getDroppedRecords()) + (slowLog == null ? 0 : slowLog.getDroppedRecords());
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (accessLog != null)
+        accessLog.close();
+    } finally {
+      if (slowLog != null)
+        slowLog.close();
+    }
+  }
+
+  static String formatSlowRequest(Request request, Response response, InetAddress address) {
+    StringBuilder line = new StringBuilder();
+    line.append(Instant.now()).append(' ').append(address == null ? "-" : address.getHostAddress());
+    line.append(" \"");
+    if (request.requestMethod == null)
+      line.append('-');
+    else
+      line.append(request.requestMethod).append(' ').append(request.getTarget()).append(' ').append(request.httpVersion);
+    line.append("\" ").append(getStatus(response)).append(" route=").append(request.route == null ? "-" : request.route);
+    line.append(" total=").append(milliseconds(request.writtenTime - request.firstByteTime)).append("ms");
+
+    appendPhase(line, "accept", request.acceptTime, request.firstByteTime);
+    appendPhase(line, "first_byte", request.firstByteTime, request.firstByteTime);
+    appendPhase(line, "headers", request.headersReadTime, request.firstByteTime);
+    appendPhase(line, "body", request.bodyReadTime, request.firstByteTime);
+    appendPhase(line, "parsed", request.parsedTime, request.firstByteTime);
+    appendPhase(line, "handler_start", request.handlerStartTime, request.firstByteTime);
+    appendPhase(line, "handler_end", request.handlerEndTime, request.firstByteTime);
+    appendPhase(line, "written", request.writtenTime, request.firstByteTime);
+    return line.toString();
+  }
+
+  private static void appendPhase(StringBuilder line, String phase, long time, long origin) {
+    line.append(' ').append(phase).append('=').append(time == 0 ? "-" : milliseconds(time - origin));
+  }
+
+  private static String milliseconds(long nanoseconds) {
+    return String.format(Locale.ROOT, "%.3f", nanoseconds / NANOSECONDS_PER_MILLISECOND);
+  }
+
+  private static int getStatus(Response response) {
+    return response.responseStatusCode == null ? 0 : response.responseStatusCode.getCode();
+  }
+
+  private static long getBodyLength(Request request, Response response) {
+    String contentLength = response.getHeader(CONTENT_LENGTH);
+    if ("HEAD".equals(request.requestMethod) || contentLength == null)
+      return -1;
+
+    try {
+      return Long.parseLong(contentLength);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
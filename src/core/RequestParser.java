@@ -1,5 +1,10 @@
 package core;
 
+import events.RequestParseEvent;
+import util.HttpHeaders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.*;
@@ -7,12 +12,17 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 
-import static core.HttpMessageReader.readExactNumberOfBytes;
-import static core.HttpMessageReader.readStartLineAndHeaders;
-import static core.HttpRequestRegEx.*;
+import static core.HttpGrammar.*;
+import static core.HttpRequestRegEx.CRLF;
 import static core.HttpStatusCode.*;
+import static util.HttpHeaders.CONTENT_LENGTH;
+import static util.HttpHeaders.CONTENT_TYPE;
+import static util.HttpHeaders.HOST;
+import static util.HttpHeaders.TRANSFER_ENCODING;
 
 public class RequestParser {
+  private static final int FORM_CHUNK_SIZE = 8192;
+
   Request request;
   Configuration configuration;
 
@@ -21,36 +31,97 @@ public class RequestParser {
     this.request = new Request();
   }
 
-  Request setFields(InputStream in) {
+  Request setFields(HttpMessageReader reader) {
+    if (setStartLineAndHeaders(reader))
+      setContent(reader);
+    return request;
+  }
+
+  boolean setStartLineAndHeaders(HttpMessageReader reader) {
+    try {
+      parseStartLineAndHeaders(reader);
+      return true;
+    } catch (HttpError e) {
+      request.responseStatusCode = e.getErrorCode();
+      return false;
+    }
+  }
+
+  Request setContent(HttpMessageReader reader) {
     try {
-      parse(in);
+      parseContent(reader);
     } catch (HttpError e) {
       request.responseStatusCode = e.getErrorCode();
     }
     return request;
   }
 
-  void parse(InputStream in) {
-    String[] requestLineAndHeaders = readStartLineAndHeaders(in).split(CRLF,2);
-    String requestLine = requestLineAndHeaders[0];
+  void parse(HttpMessageReader reader) {
+    parseStartLineAndHeaders(reader);
+    parseContent(reader);
+  }
+
+  void parseStartLineAndHeaders(HttpMessageReader reader) {
+    String requestLineAndHeaders;
+    try {
+      requestLineAndHeaders = reader.readStartLineAndHeaders();
+    } finally {
+      request.firstByteTime = reader.getDataTime();
+    }
+    request.headersReadTime = System.nanoTime();
+
+    RequestParseEvent event = new RequestParseEvent();
+    event.begin();
+    try {
+      parseStartLineAndHeaders(requestLineAndHeaders);
+    } catch (HttpError e) {
+      event.errorStatus = e.getErrorCode().getCode();
+      throw e;
+    } finally {
+      if (event.shouldCommit()) {
+        event.method = request.requestMethod;
+        event.target = request.getTarget();
+        event.version = request.httpVersion;
+        event.headerBytes = requestLineAndHeaders.length();
+        event.commit();
+      }
+    }
+  }
+
+  private void parseStartLineAndHeaders(String requestLineAndHeaders) {
+    int endOfRequestLine = requestLineAndHeaders.indexOf(CRLF);
+    String requestLine = requestLineAndHeaders;
     String headers = null;
-    if (requestLineAndHeaders.length == 2)
-      headers = requestLineAndHeaders[1];
+    if (endOfRequestLine != -1) {
+      requestLine = requestLineAndHeaders.substring(0, endOfRequestLine);
+      headers = requestLineAndHeaders.substring(endOfRequestLine + CRLF.length());
+    }
 
     parseRequestLine(requestLine);
     parseHeaders(headers);
-    request.requestURI = buildAbsoluteURI(request.getHeader("Host"), request.requestURI);
+    request.requestURI = buildAbsoluteURI(request.getHeader(HOST), request.requestURI);
     parseParameters();
 
     setBodyCharset();
-    readBody(in);
+  }
+
+  void parseContent(HttpMessageReader reader) {
+    readBody(reader);
     parseBody();
 
     validateHeaders();
   }
 
+  long getExpectedContentLength() {
+    try {
+      return Math.max(0, Long.parseLong(request.getHeader(CONTENT_LENGTH)));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
   void setBodyCharset() {
-    Charset parsedBodyCharset = getParsedBodyCharset(request.getHeader("Content-Type"));
+    Charset parsedBodyCharset = getParsedBodyCharset(request.getHeader(CONTENT_TYPE));
     if (parsedBodyCharset != null)
       request.bodyCharset = parsedBodyCharset;
   }
@@ -80,23 +151,29 @@ public class RequestParser {
     if (multipleHeaders == null)
       return;
 
-    for (String headerLine : replaceMultipleLWSWithSingleSpace(multipleHeaders).split(CRLF))
-      setHeader(headerLine);
+    String foldedHeaders = replaceMultipleLWSWithSingleSpace(multipleHeaders);
+    int start = 0;
+    int count = 0;
+    for (int end; (end = foldedHeaders.indexOf(CRLF, start)) != -1; start = end + CRLF.length())
+      setHeader(foldedHeaders, start, end, ++count);
+    setHeader(foldedHeaders, start, foldedHeaders.length(), ++count);
+  }
+
+  private void setHeader(String headers, int start, int end, int count) {
+    if (count > configuration.getMaximumNumberOfHeaders() || end - start > configuration.getMaximumHeaderLength())
+      throw new HttpError(REQUEST_HEADER_FIELDS_TOO_LARGE);
+    setHeader(headers.substring(start, end));
   }
 
   void setHeader(String headerLine) {
     if (!validateHeader(headerLine))
       throw new HttpError(BAD_REQUEST);
 
-    String[] headerAndValue = headerLine.split(":", 2);
-    String header = headerAndValue[0];
-    String value = headerAndValue[1].trim();
+    int colon = headerLine.indexOf(':');
+    String header = headerLine.substring(0, colon);
+    String value = headerLine.substring(colon + 1).trim();
 
-    String existingValue = request.getHeader(header);
-    if (existingValue != null)
-      value = existingValue + ", " + value;
-
-    request.setHeader(header, value);
+    request.addHeader(header, value);
   }
 
   void setHttpVersion(String httpVersion) {
@@ -150,15 +227,79 @@ public class RequestParser {
     if (parameters.isEmpty()) return;
 
     String[] splitParameters = parameters.split("&");
-    for (String parameter : splitParameters) {
-      String[] splitParameter = parameter.split("=", 2);
+    for (String parameter : splitParameters)
+      splitParameter(parameter);
+  }
+
+  void splitParameter(String parameter) {
+    String[] splitParameter = parameter.split("=", 2);
+
+    String name = splitParameter[0];
+    String value = null;
+    if (splitParameter.length == 2)
+      value = splitParameter[1];
+
+    decodeAndSetParameters(name, value);
+  }
+
+  void parseFormParameters(InputStream body) {
+    ByteArrayOutputStream parameter = new ByteArrayOutputStream();
+    byte[] chunk = new byte[FORM_CHUNK_SIZE];
+    try {
+      for (int count = body.read(chunk); count != -1; count = body.read(chunk)) {
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+          if (chunk[i] == '&') {
+            appendFormParameter(parameter, chunk, start, i - start);
+            setFormParameter(parameter);
+            start = i + 1;
+          }
+        }
+        appendFormParameter(parameter, chunk, start, count - start);
+      }
+      setFormParameter(parameter);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to read body from input stream");
+    }
+  }
+
+  private void appendFormParameter(ByteArrayOutputStream parameter, byte[] chunk, int offset, int length) {
+    if (parameter.size() + length > configuration.getMaximumFormParameterSize())
+      throw new HttpError(REQUEST_ENTITY_TOO_LARGE);
+    parameter.write(chunk, offset, length);
+  }
 
-      String name = splitParameter[0];
-      String value = null;
-      if (splitParameter.length == 2)
-        value = splitParameter[1];
+  private void setFormParameter(ByteArrayOutputStream parameter) {
+    if (parameter.size() > 0)
+      splitParameter(new String(parameter.toByteArray(), request.bodyCharset));
+    parameter.reset();
+  }
 
-      decodeAndSetParameters(name, value);
+  void parseMultipart(InputStream body, String boundary) {
+    MultipartReader reader = new MultipartReader(body, boundary, configuration.getMaximumHeadersSize());
+    long remaining = configuration.getMaximumBodySize();
+    try {
+      for (HttpHeaders headers = reader.nextPart(); headers != null; headers = reader.nextPart()) {
+        if (request.parts.size() == configuration.getMaximumNumberOfParts())
+          throw new HttpError(REQUEST_ENTITY_TOO_LARGE);
+
+        Part part = new Part(headers);
+        part.write(reader.getPartStream(), configuration.getPartMemoryThreshold(), Math.min(configuration.getMaximumPartSize(), remaining));
+        request.parts.add(part);
+        remaining -= part.getSize();
+
+        if (part.getFileName() == null && part.getName() != null && part.isInMemory()) {
+          LinkedList<String> values = request.parameters.getOrDefault(part.getName(), new LinkedList<>());
+          values.add(part.getString());
+          request.parameters.put(part.getName(), values);
+        }
+      }
+    } catch (IOException e) {
+      request.deleteParts();
+      throw new RuntimeException("Failed to read multipart body from input stream");
+    } catch (RuntimeException e) {
+      request.deleteParts();
+      throw e;
     }
   }
 
@@ -174,48 +315,72 @@ public class RequestParser {
   }
 
   void parseBody() {
-    if (request.body == null || !"POST".equals(request.requestMethod)) return;
+    if (request.bodyStream == null || !"POST".equals(request.requestMethod)) return;
 
-    String contentType = request.getHeader("Content-Type");
+    String contentType = request.getHeader(CONTENT_TYPE);
     if (contentType != null) {
-      if (contentType.matches(".*multipart/form-data.*"))
-        throw new HttpError(NOT_IMPLEMENTED);
+      if (contentType.contains("multipart/form-data"))
+        parseMultipart(request.bodyStream, MultipartReader.getBoundary(contentType));
 
-      if (contentType.matches(".*application/x-www-form-urlencoded.*"))
-        splitParameters(request.body);
+      if (contentType.contains("application/x-www-form-urlencoded"))
+        parseFormParameters(request.bodyStream);
     }
   }
 
   void validateHeaders() {
     if (!request.contentHeadersAreCorrect())
       throw new HttpError(BAD_REQUEST);
-
-    if (request.getHeader("Transfer-Encoding") != null)
-      throw new HttpError(NOT_IMPLEMENTED);
   }
 
-  void readBody(InputStream in) {
-    String contentLength = request.getHeader("Content-Length");
+  void readBody(HttpMessageReader reader) {
+    String contentLength = request.getHeader(CONTENT_LENGTH);
 
-    if (contentLength == null) {
-      request.body = null;
+    if (isChunked()) {
+      if (contentLength != null)
+        throw new HttpError(BAD_REQUEST);
+      request.bodyStream = new ChunkedRequestBody(reader, configuration.getMaximumBodySize(), configuration.getMaximumHeadersSize());
       return;
     }
-    if ("0".equals(contentLength)) {
-      request.body = "";
+
+    if (contentLength == null) {
+      request.bodyStream = null;
       return;
     }
 
-    int numericContentLength = parseContentLengthHeader(contentLength);
-    request.body = readExactNumberOfBytes(in, numericContentLength, request.bodyCharset);
+    request.bodyStream = new RequestBody(reader, parseContentLengthHeader(contentLength));
+  }
+
+  boolean isChunked() {
+    String transferEncoding = request.getHeader(TRANSFER_ENCODING);
+    if (transferEncoding == null)
+      return false;
 
-    if (request.calculateContentLength() != numericContentLength)
-      throw new HttpError(BAD_REQUEST);
+    String[] codings = transferEncoding.split(",");
+    for (int i = 0; i < codings.length; i++) {
+      String coding = codings[i].trim();
+      if (!"chunked".equalsIgnoreCase(coding))
+        throw new HttpError(NOT_IMPLEMENTED);
+      if (i != codings.length - 1)
+        throw new HttpError(BAD_REQUEST);
+    }
+    return true;
+  }
+
+  boolean hasBufferedContent(HttpMessageReader reader) {
+    if (request.getHeader(TRANSFER_ENCODING) != null)
+      return reader.hasBufferedChunkedBody() || reader.bufferedBytes() > configuration.getMaximumBodySize() + configuration.getMaximumHeadersSize();
+    long expectedContentLength = getExpectedContentLength();
+    return reader.bufferedBytes() >= expectedContentLength || expectedContentLength > configuration.getMaximumBodySize();
   }
 
-  int parseContentLengthHeader(String contentLength) {
+  long parseContentLengthHeader(String contentLength) {
     try {
-      return Integer.parseInt(contentLength);
+      long numericContentLength = Long.parseLong(contentLength);
+      if (numericContentLength < 0)
+        throw new HttpError(BAD_REQUEST);
+      if (numericContentLength > configuration.getMaximumBodySize())
+        throw new HttpError(REQUEST_ENTITY_TOO_LARGE);
+      return numericContentLength;
     } catch (NumberFormatException e) {
       throw new HttpError(BAD_REQUEST);
     }
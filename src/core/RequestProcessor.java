@@ -1,25 +1,62 @@
 package core;
 
+import events.ConnectionCloseEvent;
+import events.ResponseWriteEvent;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
 import static core.HttpStatusCode.INTERNAL_SERVER_ERROR;
 import static core.HttpStatusCode.NOT_FOUND;
+import static util.HttpHeaders.CONNECTION;
+import static util.HttpHeaders.CONTENT_LENGTH;
 
 public class RequestProcessor implements Runnable {
+  private static final int MAXIMUM_BATCH_SIZE = 65536;
+  private static final int MAXIMUM_DISCARDED_BODY = 65536;
+  private static final System.Logger LOGGER = System.getLogger(RequestProcessor.class.getName());
+
   private final Socket clientSocket;
   private Configuration configuration;
   private Map<Pattern, Handler> handlers;
+  private Router router;
+  private ResponseCompressor compressor;
+  private ServerMetrics metrics;
+  private RequestLog requestLog;
+  private final long acceptTime = System.nanoTime();
+  private int requestsServed;
 
   RequestProcessor(Socket clientSocket, Configuration configuration, Map<Pattern, Handler> handlers) {
+    this(clientSocket, configuration, (Router) null);
+    this.handlers = handlers;
+  }
+
+  RequestProcessor(Socket clientSocket, Configuration configuration, Router router) {
+    this(clientSocket, configuration, router, null);
+  }
+
+  RequestProcessor(Socket clientSocket, Configuration configuration, Router router, ServerMetrics metrics) {
+    this(clientSocket, configuration, router, metrics, null);
+  }
+
+  RequestProcessor(Socket clientSocket, Configuration configuration, Router router, ServerMetrics metrics, RequestLog requestLog) {
     this.clientSocket = clientSocket;
     this.configuration = configuration;
-    this.handlers = handlers;
+    this.router = router;
+    this.metrics = metrics;
+    this.requestLog = requestLog;
+    this.compressor = new ResponseCompressor(configuration);
   }
 
   @Override
@@ -29,42 +66,244 @@ public class RequestProcessor implements Runnable {
         process(out, in);
       } finally {
         clientSocket.close();
+        recordClose(clientSocket, requestsServed);
       }
     } catch (Exception e) {
-      System.out.println("Exception caught:");
-      System.out.println(e.getMessage());
+      if (metrics != null)
+        metrics.recordConnectionError();
+      if (LOGGER.isLoggable(System.Logger.Level.DEBUG))
+        LOGGER.log(System.Logger.Level.DEBUG, "Connection closed after an error", e);
     }
   }
 
   void process(OutputStream out, InputStream in) throws IOException {
-    Request request = new Request();
+    process(out, in, clientSocket.getChannel() != null ? clientSocket.getChannel() : Channels.newChannel(out));
+  }
+
+  void process(OutputStream out, InputStream in, WritableByteChannel channel) throws IOException {
+    HttpMessageReader reader = new HttpMessageReader(in, configuration.getMaximumHeadersSize());
+    List<ByteBuffer> batch = new ArrayList<>();
+    requestsServed = 0;
+    boolean keepAlive = true;
+
+    while (keepAlive && (requestsServed == 0 || awaitNextRequest(reader))) {
+      requestsServed++;
+      Request request = null;
+      Response response;
+      try {
+        RequestParser parser = new RequestParser(configuration);
+        request = parser.setFields(reader);
+        response = respond(request, requestsServed);
+      } catch (Exception e) {
+        response = errorResponse(new Request(), INTERNAL_SERVER_ERROR);
+      }
+
+      keepAlive = !hasConnectionToken(response, "close");
+      ResponseWriteEvent event = new ResponseWriteEvent();
+      event.begin();
+      try {
+        long bytes = write(response, batch, out, channel);
+
+        if (!keepAlive || !reader.hasBufferedHeaders() || remaining(batch) >= MAXIMUM_BATCH_SIZE)
+          flush(batch, out, channel);
+        recordWrite(event, response, bytes);
+      } finally {
+        if (request != null)
+          request.deleteParts();
+      }
+      if (request != null)
+        record(request, response);
+    }
+  }
+
+  void record(Request request, Response response) {
+    if (metrics == null && requestLog == null)
+      return;
+
+    request.writtenTime = System.nanoTime();
+    if (request.bodyReadTime == 0)
+      request.bodyReadTime = request.bodyStream == null || request.bodyStream.getRemaining() == 0 && request.bodyStream.finishedTime == 0 ?
+        request.headersReadTime : request.bodyStream.finishedTime;
+    if (metrics != null)
+      metrics.record(request, response);
+    if (requestLog != null)
+      requestLog.record(request, response, clientSocket.getInetAddress());
+  }
+
+  static void recordWrite(ResponseWriteEvent event, Response response, long bytes) {
+    if (event.shouldCommit()) {
+      event.status = response.responseStatusCode == null ? 0 : response.responseStatusCode.getCode();
+      event.bytes = bytes;
+      event.commit();
+    }
+  }
+
+  static void recordClose(Socket socket, int requestsServed) {
+    ConnectionCloseEvent event = new ConnectionCloseEvent();
+    if (event.isEnabled()) {
+      event.remoteAddress = String.valueOf(socket.getRemoteSocketAddress());
+      event.requests = requestsServed;
+      event.commit();
+    }
+  }
+
+  // Header blocks and in-memory bodies are queued as they are and sent with one gathering write once no further
+  // pipelined request is buffered, so responses to a pipelined batch leave in one system call without being copied.
+  private long write(Response response, List<ByteBuffer> batch, OutputStream out, WritableByteChannel channel) throws IOException {
+    byte[] headerBlock = response.generateHeaderBlock();
+    batch.add(ByteBuffer.wrap(headerBlock));
+
+    if (response.getBodyWriter() != null) {
+      flush(batch, out, channel);
+      ChunkedOutputStream chunked = response.isChunked() ? new ChunkedOutputStream(out) : null;
+      CountingOutputStream counted = new CountingOutputStream(chunked == null ? out : chunked);
+      response.getBodyWriter().writeTo(counted);
+      if (chunked != null)
+        chunked.close();
+      out.flush();
+      return headerBlock.length + counted.getCount();
+    } else if (response.hasBodyFile()) {
+      List<Object> parts = response.openBody();
+      try {
+        flush(batch, out, channel);
+        for (Object part : parts)
+          transfer(part, channel);
+      } finally {
+        Response.closeAll(parts);
+      }
+    } else {
+      for (Object part : response.openBody())
+        batch.add((ByteBuffer) part);
+    }
+    return headerBlock.length + response.calculateContentLength();
+  }
+
+  private void flush(List<ByteBuffer> batch, OutputStream out, WritableByteChannel channel) throws IOException {
+    if (batch.isEmpty())
+      return;
+
+    if (channel instanceof GatheringByteChannel) {
+      ByteBuffer[] buffers = batch.toArray(new ByteBuffer[batch.size()]);
+      for (int first = 0; first < buffers.length; ) {
+        ((GatheringByteChannel) channel).write(buffers, first, buffers.length - first);
+        while (first < buffers.length && !buffers[first].hasRemaining())
+          first++;
+      }
+    } else {
+      for (ByteBuffer buffer : batch)
+        write(buffer, out);
+      out.flush();
+    }
+    batch.clear();
+  }
+
+  private static long remaining(List<ByteBuffer> batch) {
+    long remaining = 0;
+    for (ByteBuffer buffer : batch)
+      remaining += buffer.remaining();
+    return remaining;
+  }
+
+  private void transfer(Object part, WritableByteChannel channel) throws IOException {
+    if (part instanceof FileTransfer) {
+      FileTransfer file = (FileTransfer) part;
+      while (file.hasRemaining())
+        file.transferTo(channel);
+    } else {
+      ByteBuffer buffer = (ByteBuffer) part;
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+    }
+  }
+
+  private void write(ByteBuffer buffer, OutputStream out) throws IOException {
+    if (buffer.hasArray()) {
+      out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      return;
+    }
+
+    byte[] chunk = new byte[Math.min(buffer.remaining(), MAXIMUM_BATCH_SIZE)];
+    while (buffer.hasRemaining()) {
+      int length = Math.min(chunk.length, buffer.remaining());
+      buffer.get(chunk, 0, length);
+      out.write(chunk, 0, length);
+    }
+  }
+
+  Response respond(Request request, int requestsServed) {
+    request.acceptTime = acceptTime;
+    request.parsedTime = System.nanoTime();
     try {
-      RequestParser parser = new RequestParser(configuration);
-      request = parser.setFields(in);
       Response response = new Response(request);
 
+      request.handlerStartTime = System.nanoTime();
       executeHandlers(request, response);
+      request.handlerEndTime = System.nanoTime();
       if (response.responseStatusCode == null)
         response.generateStandardResponse(NOT_FOUND);
 
-      out.write(response.generateMessage().getBytes(StandardCharsets.ISO_8859_1));
-      out.flush();
+      compressor.compress(request, response);
+      if (keepConnectionAlive(request, response, requestsServed) && !request.discardBody(MAXIMUM_DISCARDED_BODY))
+        response.setHeader(CONNECTION, "close");
+      response.validateResponse();
+      return response;
+    } catch (HttpError e) {
+      return errorResponse(request, e.getErrorCode());
     } catch (Exception e) {
-      respondWithError(out, request, INTERNAL_SERVER_ERROR);
+      return errorResponse(request, INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  boolean awaitNextRequest(HttpMessageReader reader) throws IOException {
+    clientSocket.setSoTimeout(configuration.getKeepAliveTimeOut());
+    try {
+      return reader.awaitData();
+    } catch (SocketTimeoutException e) {
+      return false;
+    } finally {
+      clientSocket.setSoTimeout(configuration.getRequestTimeOut());
     }
   }
 
+  boolean keepConnectionAlive(Request request, Response response, int requestsServed) {
+    boolean keepAlive = request.responseStatusCode == null &&
+      requestsServed < configuration.getMaximumRequestsPerConnection() &&
+      (response.getHeader(CONTENT_LENGTH) != null || response.isChunked() || !response.responseStatusCode.allowsBody()) &&
+      !hasConnectionToken(response, "close") &&
+      !hasConnectionToken(request, "close") &&
+      ("HTTP/1.1".equals(request.httpVersion) || hasConnectionToken(request, "keep-alive"));
+
+    if (!keepAlive)
+      response.setHeader(CONNECTION, "close");
+    else if (!"HTTP/1.1".equals(request.httpVersion))
+      response.setHeader(CONNECTION, "keep-alive");
+    return keepAlive;
+  }
+
+  static boolean hasConnectionToken(HttpMessage message, String token) {
+    String connection = message.getHeader(CONNECTION);
+    if (connection == null)
+      return false;
+
+    for (String value : connection.split(","))
+      if (value.trim().equalsIgnoreCase(token))
+        return true;
+    return false;
+  }
+
   void executeHandlers(Request request, Response response) throws InstantiationException, IllegalAccessException, java.lang.reflect.InvocationTargetException, NoSuchMethodException {
-    if (request.requestURI != null)
-      for (Map.Entry<Pattern, Handler> entry : handlers.entrySet())
-        if (entry.getKey().matcher(request.requestURI.getPath()).matches())
-          entry.getValue().handle(request, response);
+    if (request.requestURI == null)
+      return;
+
+    if (router == null)
+      router = new Router(handlers);
+    router.route(request, response);
   }
 
-  void respondWithError(OutputStream out, Request request, HttpStatusCode code) throws IOException {
+  Response errorResponse(Request request, HttpStatusCode code) {
     Response response = new Response(request);
     response.generateStandardResponse(code);
-    out.write(response.generateMessage().getBytes(StandardCharsets.ISO_8859_1));
-    out.flush();
+    response.setHeader(CONNECTION, "close");
+    return response;
   }
 }
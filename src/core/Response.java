@@ -1,13 +1,32 @@
 package core;
 
-import java.util.stream.Collectors;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import static core.HttpRequestRegEx.CRLF;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static util.Helper.getServerTime;
-import static util.StringUtils.addPostfix;
+import static util.Helper.safeClose;
+import static util.HttpHeaders.CONTENT_LENGTH;
+import static util.HttpHeaders.CONTENT_TYPE;
+import static util.HttpHeaders.TRANSFER_ENCODING;
 import static util.StringUtils.defaultString;
 
 public class Response extends HttpMessage {
+  private List<BodyPart> body;
+  private BodyWriter writer;
+  private List<BodyPart> omittedBody;
+  private BodyWriter omittedWriter;
+  private long bodyLength;
+  private long streamedLength;
+  private boolean handlerChainEnded;
 
   public Response() {
     httpVersion = "HTTP/1.1";
@@ -28,30 +47,201 @@ public class Response extends HttpMessage {
 
   @Override
   public void setBody(String body) {
-    super.setBody(body);
-    setHeader("Content-Length", "" + calculateContentLength());
+    setBody(body == null ? null : body.getBytes(bodyCharset));
+  }
 
-    if ("HEAD".equals(requestMethod))
-      super.setBody(null);
+  public void setBody(byte[] body) {
+    setBody(body == null ? null : ByteBuffer.wrap(body));
   }
 
-  public String generateMessage() {
+  public void setBody(ByteBuffer body) {
+    setBody(body == null ? null : BodyPart.of(body));
+  }
+
+  public void setBody(Path file) throws IOException {
+    setBody(file == null ? null : new FileRegion(file));
+  }
+
+  public void setBody(BodyPart part) {
+    setBody(part == null ? null : Collections.singletonList(part));
+  }
+
+  public void setBody(BodyWriter writer) {
+    this.body = null;
+    this.writer = writer;
+    this.bodyLength = 0;
+    headers.remove(CONTENT_LENGTH);
+    headers.remove(TRANSFER_ENCODING);
+    if (writer != null && "HTTP/1.1".equals(httpVersion))
+      setHeader(TRANSFER_ENCODING, "chunked");
+    omitBodyForHead();
+  }
+
+  public void setBody(List<BodyPart> parts) {
+    this.body = parts == null ? null : new ArrayList<>(parts);
+    this.writer = null;
+    headers.remove(TRANSFER_ENCODING);
+    this.bodyLength = 0;
+    if (body != null)
+      for (BodyPart part : body)
+        bodyLength += part.getLength();
+    setHeader(CONTENT_LENGTH, "" + calculateContentLength());
+    omitBodyForHead();
+  }
+
+  private void omitBodyForHead() {
+    omittedBody = null;
+    omittedWriter = null;
+    if ("HEAD".equals(requestMethod)) {
+      omittedBody = body;
+      omittedWriter = writer;
+      body = null;
+      writer = null;
+    }
+  }
+
+  @Override
+  public String getBody() {
+    if (!hasBody())
+      return null;
+
+    try {
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      if (writer != null)
+        writer.writeTo(content);
+      else
+        for (BodyPart part : body)
+          part.writeTo(content);
+      return new String(content.toByteArray(), bodyCharset);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public ByteBuffer getBodyBuffer() {
+    if (body == null || body.size() != 1)
+      return null;
+    return body.get(0).getBuffer();
+  }
+
+  public BodyWriter getBodyWriter() {
+    return writer;
+  }
+
+  /**
+   * The single buffer or writer the body consists of, including the body a response to HEAD does not send,
+   * so that headers derived from it are the same as for GET.
+   */
+  Object getEntity() {
+    if (writer != null || omittedWriter != null)
+      return writer != null ? writer : omittedWriter;
+
+    List<BodyPart> entity = body == null ? omittedBody : body;
+    return entity == null || entity.size() != 1 ? null : entity.get(0).getBuffer();
+  }
+
+  public boolean isChunked() {
+    return "chunked".equalsIgnoreCase(getHeader(TRANSFER_ENCODING));
+  }
+
+  public boolean hasBodyFile() {
+    if (body != null)
+      for (BodyPart part : body)
+        if (part instanceof FileRegion)
+          return true;
+    return false;
+  }
+
+  public void endHandlerChain() {
+    handlerChainEnded = true;
+  }
+
+  public boolean isHandlerChainEnded() {
+    return handlerChainEnded;
+  }
+
+  List<Object> openBody() throws IOException {
+    List<Object> parts = new ArrayList<>();
+    if (writer != null) {
+      parts.add(ByteBuffer.wrap(writeBody(writer)));
+      return parts;
+    }
+    if (body == null)
+      return parts;
+
+    try {
+      for (BodyPart part : body)
+        parts.add(part.open());
+      return parts;
+    } catch (IOException e) {
+      closeAll(parts);
+      throw e;
+    }
+  }
+
+  private byte[] writeBody(BodyWriter writer) throws IOException {
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    OutputStream out = isChunked() ? new ChunkedOutputStream(content) : content;
+    CountingOutputStream counted = new CountingOutputStream(out);
+    writer.writeTo(counted);
+    out.close();
+    streamedLength += counted.getCount();
+    return content.toByteArray();
+  }
+
+  static void closeAll(List<Object> parts) {
+    for (Object part : parts)
+      if (part instanceof FileTransfer)
+        safeClose((FileTransfer) part);
+  }
+
+  @Override
+  public long calculateContentLength() {
+    return hasBody() ? bodyLength : 0;
+  }
+
+  long getStreamedLength() {
+    return streamedLength;
+  }
+
+  @Override
+  boolean hasBody() {
+    return body != null || writer != null;
+  }
+
+  public byte[] generateHeaderBlock() {
     validateResponse();
 
-    String headersString = headers.entrySet().stream()
-      .map((entry) -> entry.getKey() + ": " + entry.getValue())
-      .collect(Collectors.joining(CRLF));
+    StringBuilder headerBlock = new StringBuilder();
+    headerBlock.append(httpVersion).append(' ').append(responseStatusCode).append(CRLF);
+    for (String header : headers.keySet())
+      for (String value : headers.getAll(header))
+        headerBlock.append(header).append(": ").append(value).append(CRLF);
+    headerBlock.append(CRLF);
 
-    return httpVersion + " " + responseStatusCode + CRLF +
-      addPostfix(headersString, CRLF) +
-      CRLF +
-      defaultString(body);
+    return headerBlock.toString().getBytes(ISO_8859_1);
+  }
+
+  public ByteBuffer[] serialize() {
+    if (hasBodyFile() || getBodyWriter() != null)
+      throw new IllegalStateException("File and streamed bodies are sent with openBody()");
+
+    List<ByteBuffer> message = new ArrayList<>();
+    message.add(ByteBuffer.wrap(generateHeaderBlock()));
+    if (body != null)
+      for (BodyPart part : body)
+        message.add(part.getBuffer());
+    return message.toArray(new ByteBuffer[message.size()]);
+  }
+
+  public String generateMessage() {
+    return new String(generateHeaderBlock(), ISO_8859_1) + defaultString(getBody());
   }
 
   public void generateStandardResponse(HttpStatusCode code) {
     responseStatusCode = code;
     setBody(responseStatusCode.toString());
-    setHeader("Content-Type", "text/html; charset=" + bodyCharset);
+    setHeader(CONTENT_TYPE, "text/html; charset=" + bodyCharset);
     setHeader("Last-modified", getServerTime());
   }
 
@@ -62,7 +252,10 @@ public class Response extends HttpMessage {
     if (httpVersion == null)
       throw new RuntimeException("Cannot generate a valid HTTP response without HTTP version");
 
+    if (!responseStatusCode.allowsBody() && hasBody())
+      throw new RuntimeException("Responses with status " + responseStatusCode + " must not include a message body");
+
     if (!contentHeadersAreCorrect())
       throw new RuntimeException("Content-* headers are not allowed without body in response to non-HEAD requests");
   }
-}
\ No newline at end of file
+}
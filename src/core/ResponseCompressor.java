@@ -0,0 +1,162 @@
+package core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static util.HttpHeaders.CONTENT_LENGTH;
+
+public class ResponseCompressor {
+  private static final String[] SUPPORTED_ENCODINGS = {"gzip", "deflate"};
+
+  private final Configuration configuration;
+
+  ResponseCompressor(Configuration configuration) {
+    this.configuration = configuration;
+  }
+
+  void compress(Request request, Response response) throws IOException {
+    if (!configuration.isCompressionEnabled() || !isCompressible(response))
+      return;
+
+    addVary(response);
+    String encoding = negotiateEncoding(request.getHeader("Accept-Encoding"));
+    if (encoding == null)
+      return;
+
+    Object entity = response.getEntity();
+    if (entity instanceof ByteBuffer) {
+      ByteBuffer body = ((ByteBuffer) entity).duplicate();
+      if (body.remaining() < configuration.getCompressionMinimumSize())
+        return;
+      response.setBody(compress(body, encoding));
+    } else if (entity instanceof BodyWriter && response.getHeader(CONTENT_LENGTH) == null) {
+      BodyWriter writer = (BodyWriter) entity;
+      response.setBody(out -> compress(writer, out, encoding));
+    } else {
+      return;
+    }
+    response.setHeader("Content-Encoding", encoding);
+
+    String entityTag = response.getHeader("ETag");
+    if (entityTag != null && !entityTag.startsWith("W/"))
+      response.setHeader("ETag", "W/" + entityTag);
+  }
+
+  static String negotiateEncoding(String acceptEncoding) {
+    if (acceptEncoding == null)
+      return null;
+
+    String best = null;
+    double bestQuality = 0;
+    for (String encoding : SUPPORTED_ENCODINGS) {
+      double quality = getQuality(acceptEncoding, encoding);
+      if (quality > bestQuality) {
+        best = encoding;
+        bestQuality = quality;
+      }
+    }
+    return best;
+  }
+
+  public static boolean isAcceptable(String acceptEncoding, String encoding) {
+    return acceptEncoding != null && getQuality(acceptEncoding, encoding) > 0;
+  }
+
+  public static void addVary(Response response) {
+    String vary = response.getHeader("Vary");
+    if (vary == null)
+      response.setHeader("Vary", "Accept-Encoding");
+    else if (!vary.toLowerCase().contains("accept-encoding"))
+      response.setHeader("Vary", vary + ", Accept-Encoding");
+  }
+
+  private boolean isCompressible(Response response) {
+    if (response.responseStatusCode != HttpStatusCode.OK || response.getHeader("Content-Encoding") != null)
+      return false;
+
+    String contentType = response.getHeader("Content-Type");
+    if (contentType == null)
+      return false;
+
+    int parameters = contentType.indexOf(';');
+    String mediaType = (parameters == -1 ? contentType : contentType.substring(0, parameters)).trim();
+    for (String compressible : configuration.getCompressibleContentTypes())
+      if (compressible.equalsIgnoreCase(mediaType))
+        return true;
+    return false;
+  }
+
+  private static double getQuality(String acceptEncoding, String encoding) {
+    double wildcard = 0;
+    for (String element : acceptEncoding.split(",")) {
+      String[] parameters = element.split(";");
+      String coding = parameters[0].trim();
+      double quality = 1;
+      for (int i = 1; i < parameters.length; i++) {
+        String parameter = parameters[i].trim();
+        if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+          try {
+            quality = Double.parseDouble(parameter.substring(2));
+          } catch (NumberFormatException e) {
+            quality = 0;
+          }
+        }
+      }
+
+      if (coding.equalsIgnoreCase(encoding))
+        return quality;
+      if (coding.equals("*"))
+        wildcard = quality;
+    }
+    return wildcard;
+  }
+
+  private static ByteBuffer compress(ByteBuffer body, String encoding) throws IOException {
+    CompressedBody compressed = new CompressedBody(Math.max(64, body.remaining() / 4));
+    try (OutputStream out = "gzip".equals(encoding) ? new GZIPOutputStream(compressed, 8192) : new DeflaterOutputStream(compressed)) {
+      if (body.hasArray()) {
+        out.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+      } else {
+        byte[] chunk = new byte[8192];
+        while (body.hasRemaining()) {
+          int length = Math.min(chunk.length, body.remaining());
+          body.get(chunk, 0, length);
+          out.write(chunk, 0, length);
+        }
+      }
+    }
+    return compressed.toByteBuffer();
+  }
+
+  private static void compress(BodyWriter writer, OutputStream out, String encoding) throws IOException {
+    OutputStream target = new FilterOutputStream(out) {
+      @Override
+      public void write(byte[] bytes, int offset, int length) throws IOException {
+        out.write(bytes, offset, length);
+      }
+
+      @Override
+      public void close() throws IOException {
+        flush();
+      }
+    };
+    try (OutputStream compressed = "gzip".equals(encoding) ? new GZIPOutputStream(target, 8192) : new DeflaterOutputStream(target)) {
+      writer.writeTo(compressed);
+    }
+  }
+
+  private static class CompressedBody extends ByteArrayOutputStream {
+    CompressedBody(int size) {
+      super(size);
+    }
+
+    ByteBuffer toByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+  }
+}
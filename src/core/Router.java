@@ -0,0 +1,284 @@
+package core;
+
+import events.HandlerDispatchEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class Router {
+  private static final String METACHARACTERS = "\\.[]{}()*+?^$|";
+  private static final String QUANTIFIERS = "*+?{";
+  private static final String PARAMETER_START = "(?<";
+  private static final String PARAMETER_END = ">[^/]+)";
+
+  private final Node root = new Node();
+  private final int numberOfRoutes;
+
+  public Router(Map<Pattern, Handler> handlers) {
+    int order = 0;
+    for (Map.Entry<Pattern, Handler> entry : handlers.entrySet())
+      add(new Route(order++, entry.getKey(), entry.getValue()));
+    numberOfRoutes = order;
+  }
+
+  public static String toPattern(String route) {
+    StringBuilder pattern = new StringBuilder();
+    for (int i = 0; i < route.length(); i++) {
+      char c = route.charAt(i);
+      if (c == '\\' && i + 1 < route.length()) {
+        int escapeEnd = findEscapeEnd(route, i);
+        pattern.append(route, i, escapeEnd);
+        i = escapeEnd - 1;
+        continue;
+      }
+
+      int end = route.indexOf('}', i);
+      if (c == '{' && end != -1 && isParameterName(route, i + 1, end)) {
+        pattern.append(PARAMETER_START).append(route, i + 1, end).append(PARAMETER_END);
+        i = end;
+      } else {
+        pattern.append(c);
+      }
+    }
+    return pattern.toString();
+  }
+
+  /**
+   * Returns the index just past the escape sequence starting at the backslash at {@code start}, so that the braces of
+   * \p{...}, \P{...}, \x{...} and \N{...} and anything quoted between \Q and \E are not taken for path parameters.
+   */
+  private static int findEscapeEnd(String route, int start) {
+    char escaped = route.charAt(start + 1);
+    if (escaped == 'Q') {
+      int end = route.indexOf("\\E", start + 2);
+      return end == -1 ? route.length() : end + 2;
+    }
+
+    if ("pPxN".indexOf(escaped) != -1 && start + 2 < route.length() && route.charAt(start + 2) == '{') {
+      int end = route.indexOf('}', start + 2);
+      return end == -1 ? route.length() : end + 1;
+    }
+    return start + 2;
+  }
+
+  public static String toRoute(String pattern) {
+    StringBuilder route = new StringBuilder();
+    for (int i = 0; i < pattern.length(); i++) {
+      int end = pattern.startsWith(PARAMETER_START, i) ? pattern.indexOf(PARAMETER_END, i) : -1;
+      if (end != -1 && isParameterName(pattern, i + PARAMETER_START.length(), end)) {
+        route.append('{').append(pattern, i + PARAMETER_START.length(), end).append('}');
+        i = end + PARAMETER_END.length() - 1;
+      } else {
+        route.append(pattern.charAt(i));
+      }
+    }
+    return route.toString();
+  }
+
+  void route(Request request, Response response) {
+    String path = request.requestURI.getPath();
+    List<Match> matches = new ArrayList<>();
+    collectMatches(root, path, 0, new ArrayList<>(), new HashSet<>(), matches);
+    if (matches.size() > 1)
+      Collections.sort(matches);
+    if (!matches.isEmpty())
+      request.route = matches.get(0).route.name;
+
+    for (Match match : matches) {
+      request.pathParameters = match.parameters;
+      HandlerDispatchEvent event = new HandlerDispatchEvent();
+      event.begin();
+      match.route.handler.handle(request, response);
+      if (event.shouldCommit()) {
+        event.route = match.route.name;
+        event.handlerClass = match.route.handler.getClass();
+        event.method = request.requestMethod;
+        event.path = path;
+        event.commit();
+      }
+      if (response.isHandlerChainEnded())
+        return;
+    }
+  }
+
+  int getNumberOfRoutes() {
+    return numberOfRoutes;
+  }
+
+  private void add(Route route) {
+    String pattern = route.pattern.pattern();
+    Node node = root;
+    int i = 0;
+
+    if (route.pattern.flags() == 0 && pattern.indexOf('|') == -1) {
+      while (i < pattern.length()) {
+        char c = pattern.charAt(i);
+        if (pattern.startsWith(PARAMETER_START, i)) {
+          int end = pattern.indexOf(PARAMETER_END, i);
+          if (end == -1 || !isParameterName(pattern, i + PARAMETER_START.length(), end) || isQuantifier(pattern, end + PARAMETER_END.length()))
+            break;
+          route.parameterNames.add(pattern.substring(i + PARAMETER_START.length(), end));
+          if (node.parameter == null)
+            node.parameter = new Node();
+          node = node.parameter;
+          i = end + PARAMETER_END.length();
+        } else if (c == '.' && i + 2 == pattern.length() && pattern.charAt(i + 1) == '*') {
+          node.prefixed.add(route);
+          return;
+        } else if (c == '\\' && i + 1 < pattern.length() && !Character.isLetterOrDigit(pattern.charAt(i + 1))) {
+          if (isQuantifier(pattern, i + 2))
+            break;
+          node = node.child(pattern.charAt(i + 1));
+          i += 2;
+        } else if (METACHARACTERS.indexOf(c) == -1) {
+          if (isQuantifier(pattern, i + 1))
+            break;
+          node = node.child(c);
+          i++;
+        } else {
+          break;
+        }
+      }
+
+      if (i == pattern.length()) {
+        node.exact.add(route);
+        return;
+      }
+    }
+
+    if (!route.parameterNames.isEmpty()) {
+      route.parameterNames.clear();
+      node = root;
+    }
+    node.patterns.add(route);
+  }
+
+  private void collectMatches(Node node, String path, int position, List<String> values, Set<Route> matched, List<Match> matches) {
+    for (Route route : node.patterns) {
+      Matcher matcher = route.pattern.matcher(path);
+      if (matcher.matches())
+        matches.add(new Match(route, namedGroups(route.pattern, matcher)));
+    }
+
+    if (!node.prefixed.isEmpty() && !containsLineTerminator(path, position))
+      for (Route route : node.prefixed)
+        if (matched.add(route))
+          matches.add(new Match(route, parameters(route, values)));
+
+    if (position == path.length())
+      for (Route route : node.exact)
+        if (matched.add(route))
+          matches.add(new Match(route, parameters(route, values)));
+
+    if (position < path.length()) {
+      Node child = node.children.get(path.charAt(position));
+      if (child != null)
+        collectMatches(child, path, position + 1, values, matched, matches);
+    }
+
+    if (node.parameter != null) {
+      int segmentEnd = path.indexOf('/', position);
+      if (segmentEnd == -1)
+        segmentEnd = path.length();
+      // Longest value first, so a route that matches at several split points takes the one its regular expression would.
+      for (int end = segmentEnd; end > position; end--) {
+        values.add(path.substring(position, end));
+        collectMatches(node.parameter, path, end, values, matched, matches);
+        values.remove(values.size() - 1);
+      }
+    }
+  }
+
+  private static Map<String, String> parameters(Route route, List<String> values) {
+    if (route.parameterNames.isEmpty())
+      return Collections.emptyMap();
+
+    Map<String, String> parameters = new LinkedHashMap<>();
+    for (int i = 0; i < route.parameterNames.size(); i++)
+      parameters.put(route.parameterNames.get(i), values.get(i));
+    return parameters;
+  }
+
+  private static Map<String, String> namedGroups(Pattern pattern, Matcher matcher) {
+    Map<String, Integer> groups = pattern.namedGroups();
+    if (groups.isEmpty())
+      return Collections.emptyMap();
+
+    Map<String, String> parameters = new LinkedHashMap<>();
+    for (String name : groups.keySet())
+      parameters.put(name, matcher.group(name));
+    return parameters;
+  }
+
+  private static boolean isQuantifier(String pattern, int position) {
+    return position < pattern.length() && QUANTIFIERS.indexOf(pattern.charAt(position)) != -1;
+  }
+
+  private static boolean isParameterName(String value, int start, int end) {
+    if (start == end || !Character.isLetter(value.charAt(start)))
+      return false;
+    for (int i = start; i < end; i++)
+      if (!Character.isLetterOrDigit(value.charAt(i)))
+        return false;
+    return true;
+  }
+
+  private static boolean containsLineTerminator(String path, int from) {
+    for (int i = from; i < path.length(); i++) {
+      char c = path.charAt(i);
+      if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029')
+        return true;
+    }
+    return false;
+  }
+
+  private static class Node {
+    final Map<Character, Node> children = new HashMap<>();
+    final List<Route> exact = new ArrayList<>();
+    final List<Route> prefixed = new ArrayList<>();
+    final List<Route> patterns = new ArrayList<>();
+    Node parameter;
+
+    Node child(char c) {
+      return children.computeIfAbsent(c, key -> new Node());
+    }
+  }
+
+  private static class Route {
+    final int order;
+    final Pattern pattern;
+    final Handler handler;
+    final String name;
+    final List<String> parameterNames = new ArrayList<>();
+
+    Route(int order, Pattern pattern, Handler handler) {
+      this.order = order;
+      this.pattern = pattern;
+      this.handler = handler;
+      this.name = toRoute(pattern.pattern());
+    }
+  }
+
+  private static class Match implements Comparable<Match> {
+    final Route route;
+    final Map<String, String> parameters;
+
+    Match(Route route, Map<String, String> parameters) {
+      this.route = route;
+      this.parameters = parameters;
+    }
+
+    @Override
+    public int compareTo(Match other) {
+      return Integer.compare(route.order, other.route.order);
+    }
+  }
+}
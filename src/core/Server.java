@@ -1,24 +1,48 @@
 package core;
 
+import events.ConnectionAcceptEvent;
 import handlers.FileSystemHandler;
+import handlers.MetricsHandler;
+import metrics.MetricRegistry;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
+import static core.HttpStatusCode.SERVICE_UNAVAILABLE;
+
 public class Server {
+  private static final long ACCEPT_PAUSE = 100;
+  private static final long SHED_LINGER = 100;
+  private static final int SHED_DRAIN_BUFFER_SIZE = 4096;
+  private static final System.Logger LOGGER = System.getLogger(Server.class.getName());
+
   private Configuration configuration;
-  private boolean running = false;
-  private ServerSocket serverSocket;
+  private volatile boolean running = false;
+  private ServerSocketChannel serverChannel;
   Map<Pattern, Handler> handlers = new LinkedHashMap<>();
   private ExecutorService threadPool;
+  private EventLoop[] eventLoops;
+  private ConnectionLimiter connectionLimiter;
+  private Router router;
+  private RequestLog requestLog;
+  private ScheduledExecutorService shedCloser;
+  private final ServerMetrics metrics = new ServerMetrics(new MetricRegistry());
 
   public Server() {
     this(new Configuration());
@@ -40,61 +64,248 @@ public class Server {
   }
 
   public void setHandler(String pattern, Handler handler) {
-    handlers.put(Pattern.compile(pattern), handler);
+    handlers.put(Pattern.compile(Router.toPattern(pattern)), handler);
   }
 
   public void start() {
     int port = configuration.getPort();
-    System.out.println("Starting server on port " + port + "...");
-    serverSocket = initServerSocket(port);
-    threadPool = Executors.newFixedThreadPool(configuration.getNumberOfThreads());
+    LOGGER.log(System.Logger.Level.INFO, "Starting server on port " + port + "...");
+    registerMetrics();
+    requestLog = openRequestLog();
+    try {
+      serverChannel = initServerChannel(port);
+    } catch (RuntimeException e) {
+      safeClose(requestLog);
+      throw e;
+    }
+    connectionLimiter = new ConnectionLimiter(configuration.getMaximumConnections());
+    shedCloser = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "shed-closer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    router = new Router(getRoutes());
+    running = true;
     try {
-      listen();
+      switch (configuration.getEngine()) {
+        case NIO:
+          startEventLoops();
+          listenWithEventLoops();
+          break;
+        case VIRTUAL_THREADS:
+          threadPool = Executors.newVirtualThreadPerTaskExecutor();
+          listen();
+          break;
+        default:
+          threadPool = newBoundedThreadPool();
+          listen();
+      }
     } catch (Exception e) {
-      System.out.println(e.getMessage());
-      stop();
+      if (running) {
+        LOGGER.log(System.Logger.Level.ERROR, "Server stopped after an error", e);
+        stop();
+      }
     }
   }
 
   public void stop() {
-    safeClose(serverSocket);
-    stopThreads();
     running = false;
+    safeClose(serverChannel);
+    stopThreads();
+    stopEventLoops();
+    if (shedCloser != null)
+      shedCloser.shutdown();
+    safeClose(requestLog);
   }
 
   public Boolean isRunning() {
     return running;
   }
 
+  public ServerMetrics getMetrics() {
+    return metrics;
+  }
+
+  public int getQueueDepth() {
+    ExecutorService pool = threadPool;
+    return pool instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) pool).getQueue().size() : 0;
+  }
+
+  public long getDroppedLogRecords() {
+    return requestLog == null ? 0 : requestLog.getDroppedRecords();
+  }
+
+  public int getActiveConnections() {
+    return connectionLimiter == null ? 0 : connectionLimiter.getActiveConnections();
+  }
+
+  public long getShedConnections() {
+    return connectionLimiter == null ? 0 : connectionLimiter.getShedConnections();
+  }
+
+  private void registerMetrics() {
+    MetricRegistry registry = metrics.getRegistry();
+    registry.gauge("httpserver_active_connections", "Connections currently open.", () -> getActiveConnections());
+    registry.counter("httpserver_shed_connections_total", "Connections refused because the server was overloaded.", () -> getShedConnections());
+    registry.gauge("httpserver_queue_depth", "Connections waiting for a worker thread.", () -> getQueueDepth());
+    registry.counter("httpserver_access_log_dropped_total", "Access and slow request log records dropped because the log buffer was full.", () -> getDroppedLogRecords());
+  }
+
+  private Map<Pattern, Handler> getRoutes() {
+    if (configuration.getMetricsPath() == null)
+      return handlers;
+
+    Map<Pattern, Handler> routes = new LinkedHashMap<>();
+    routes.put(Pattern.compile(Pattern.quote(configuration.getMetricsPath())), new MetricsHandler(metrics.getRegistry()));
+    routes.putAll(handlers);
+    return routes;
+  }
+
   private void listen() {
-    running = true;
     while(running) {
-      Runnable requestProcessor = new RequestProcessor(accept(), configuration, handlers);
-      threadPool.execute(requestProcessor);
+      SocketChannel channel = acceptWithinLimits();
+      if (channel == null)
+        continue;
+
+      try {
+        Socket clientSocket = channel.socket();
+        clientSocket.setSoTimeout(configuration.getRequestTimeOut());
+        RequestProcessor requestProcessor = new RequestProcessor(clientSocket, configuration, router, metrics, requestLog);
+        threadPool.execute(() -> {
+          try {
+            requestProcessor.run();
+          } finally {
+            connectionLimiter.release();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        connectionLimiter.release();
+        shed(channel);
+      } catch (IOException e) {
+        connectionLimiter.release();
+        safeClose(channel);
+      }
     }
   }
 
-  private Socket accept() {
+  private void listenWithEventLoops() {
+    for (int i = 0; running; ) {
+      SocketChannel channel = acceptWithinLimits();
+      if (channel == null)
+        continue;
+
+      try {
+        channel.configureBlocking(false);
+        eventLoops[i].register(channel);
+        i = (i + 1) % eventLoops.length;
+      } catch (IOException e) {
+        connectionLimiter.release();
+        safeClose(channel);
+      }
+    }
+  }
+
+  private SocketChannel acceptWithinLimits() {
+    if (configuration.getOverloadPolicy() == OverloadPolicy.STOP_ACCEPTING)
+      return connectionLimiter.tryAcquire(ACCEPT_PAUSE) ? accept() : null;
+
+    SocketChannel channel = accept();
+    if (connectionLimiter.tryAcquire())
+      return channel;
+
+    shed(channel);
+    return null;
+  }
+
+  private SocketChannel accept() {
     try {
-      Socket clientSocket = serverSocket.accept();
-      clientSocket.setSoTimeout(configuration.getRequestTimeOut());
-      return clientSocket;
+      SocketChannel channel = serverChannel.accept();
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      ConnectionAcceptEvent event = new ConnectionAcceptEvent();
+      if (event.isEnabled()) {
+        event.remoteAddress = String.valueOf(channel.getRemoteAddress());
+        event.commit();
+      }
+      return channel;
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
-  private ServerSocket initServerSocket(int portNumber) {
+  private void shed(SocketChannel channel) {
+    connectionLimiter.recordShed();
+    try {
+      channel.configureBlocking(true);
+      channel.write(serviceUnavailable().serialize());
+      channel.shutdownOutput();
+      channel.configureBlocking(false);
+      shedCloser.schedule(() -> drainAndClose(channel), SHED_LINGER, TimeUnit.MILLISECONDS);
+    } catch (IOException | RejectedExecutionException e) {
+      safeClose(channel);
+    }
+  }
+
+  // Closing with unread request bytes makes the kernel send a reset, which can discard the 503 before the
+  // client has read it, so a shed connection lingers briefly and what the client sent is read first.
+  private void drainAndClose(SocketChannel channel) {
+    ByteBuffer discarded = ByteBuffer.allocate(SHED_DRAIN_BUFFER_SIZE);
+    try {
+      while (channel.read(discarded) > 0)
+        discarded.clear();
+    } catch (IOException ignored) {
+    } finally {
+      safeClose(channel);
+    }
+  }
+
+  private Response serviceUnavailable() {
+    Response response = new Response();
+    response.generateStandardResponse(SERVICE_UNAVAILABLE);
+    response.setHeader("Retry-After", "" + configuration.getRetryAfter());
+    response.setHeader("Connection", "close");
+    return response;
+  }
+
+  private ExecutorService newBoundedThreadPool() {
+    int numberOfThreads = configuration.getNumberOfThreads();
+    RejectedExecutionHandler rejectionPolicy = configuration.getOverloadPolicy() == OverloadPolicy.STOP_ACCEPTING ?
+      Server::awaitQueueSpace : new ThreadPoolExecutor.AbortPolicy();
+
+    return new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(configuration.getWorkQueueCapacity()), rejectionPolicy);
+  }
+
+  private static void awaitQueueSpace(Runnable task, ThreadPoolExecutor executor) {
+    try {
+      if (!executor.isShutdown()) {
+        executor.getQueue().put(task);
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    throw new RejectedExecutionException();
+  }
+
+  private ServerSocketChannel initServerChannel(int portNumber) {
     try {
-      ServerSocket socket = new ServerSocket();
-      socket.setReuseAddress(true);
-      socket.bind(new InetSocketAddress(portNumber));
-      return socket;
+      ServerSocketChannel channel = ServerSocketChannel.open();
+      channel.socket().setReuseAddress(true);
+      channel.socket().bind(new InetSocketAddress(portNumber));
+      return channel;
     } catch (IOException e) {
       throw new RuntimeException("Could not start server", e);
     }
   }
 
+  private RequestLog openRequestLog() {
+    try {
+      return RequestLog.open(configuration);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not open request log", e);
+    }
+  }
+
   private void safeClose(java.io.Closeable closable) {
     if (closable == null)
       return;
@@ -104,6 +315,23 @@ public class Server {
     } catch (Throwable ignored) {}
   }
 
+  private void startEventLoops() {
+    eventLoops = new EventLoop[configuration.getNumberOfEventLoops()];
+    for (int i = 0; i < eventLoops.length; i++) {
+      eventLoops[i] = new EventLoop(configuration, router, connectionLimiter, metrics, requestLog);
+      new Thread(eventLoops[i], "event-loop-" + i).start();
+    }
+  }
+
+  private void stopEventLoops() {
+    if (eventLoops == null)
+      return;
+
+    for (EventLoop eventLoop : eventLoops)
+      if (eventLoop != null)
+        eventLoop.stop();
+  }
+
   private void stopThreads() {
     if (threadPool == null)
       return;
@@ -111,7 +339,7 @@ public class Server {
     try {
       threadPool.shutdown();
       if(!threadPool.awaitTermination(10, TimeUnit.SECONDS))
-        System.out.println("Couldn't stop all threads");
+        LOGGER.log(System.Logger.Level.WARNING, "Couldn't stop all threads");
     } catch (Throwable ignored) {}
   }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package core;
+
+import metrics.Histogram;
+import metrics.MetricRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ServerMetrics {
+  private static final String NO_ROUTE = "none";
+
+  private final MetricRegistry registry;
+  private final Map<String, Histogram> routes = new ConcurrentHashMap<>();
+  private final Histogram[] statuses = new Histogram[HttpStatusCode.values().length];
+  private final Histogram readHeaders;
+  private final Histogram parse;
+  private final Histogram handler;
+  private final Histogram write;
+  private final LongAdder connectionErrors;
+
+  public ServerMetrics(MetricRegistry registry) {
+    this.registry = registry;
+    this.readHeaders = phase("read_headers");
+    this.parse = phase("parse");
+    this.handler = phase("handler");
+    this.write = phase("write");
+    this.connectionErrors = registry.counter("httpserver_connection_errors_total", "Connections closed because of an I/O or processing error.");
+  }
+
+  public MetricRegistry getRegistry() {
+    return registry;
+  }
+
+  void record(Request request, Response response) {
+    record(route(request.route), request.firstByteTime, request.writtenTime);
+    if (response.responseStatusCode != null)
+      record(status(response.responseStatusCode), request.firstByteTime, request.writtenTime);
+
+    record(readHeaders, request.firstByteTime, request.headersReadTime);
+    record(parse, request.headersReadTime, request.parsedTime);
+    record(handler, request.handlerStartTime, request.handlerEndTime);
+    record(write, request.handlerEndTime, request.writtenTime);
+  }
+
+  void recordConnectionError() {
+    connectionErrors.increment();
+  }
+
+  private static void record(Histogram histogram, long start, long end) {
+    if (start != 0 && end != 0)
+      histogram.record(end - start);
+  }
+
+  private Histogram route(String route) {
+    if (route == null)
+      route = NO_ROUTE;
+
+    Histogram histogram = routes.get(route);
+    if (histogram == null)
+      histogram = routes.computeIfAbsent(route, r -> registry.histogram("httpserver_request_duration_seconds",
+        "Time from the first byte of a request until its response was written, by route.", "route", r));
+    return histogram;
+  }
+
+  private Histogram status(HttpStatusCode code) {
+    Histogram histogram = statuses[code.ordinal()];
+    if (histogram == null)
+      statuses[code.ordinal()] = histogram = registry.histogram("httpserver_response_duration_seconds",
+        "Time from the first byte of a request until its response was written, by status code.", "status", "" + code.getCode());
+    return histogram;
+  }
+
+  private Histogram phase(String phase) {
+    return registry.histogram("httpserver_phase_duration_seconds", "Time spent in each phase of serving a request.", "phase", phase);
+  }
+}
@@ -0,0 +1,18 @@
+package events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("httpserver.ConnectionAccept")
+@Label("Connection Accept")
+@Category("HTTP Server")
+@Description("A client connection was accepted.")
+@StackTrace(false)
+public class ConnectionAcceptEvent extends Event {
+  @Label("Remote Address")
+  public String remoteAddress;
+}
@@ -0,0 +1,21 @@
+package events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("httpserver.ConnectionClose")
+@Label("Connection Close")
+@Category("HTTP Server")
+@Description("A client connection was closed.")
+@StackTrace(false)
+public class ConnectionCloseEvent extends Event {
+  @Label("Remote Address")
+  public String remoteAddress;
+
+  @Label("Requests Served")
+  public int requests;
+}
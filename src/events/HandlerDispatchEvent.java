@@ -0,0 +1,27 @@
+package events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("httpserver.HandlerDispatch")
+@Label("Handler Dispatch")
+@Category("HTTP Server")
+@Description("One handler of the chain matched for a request, from its invocation until it returned.")
+@StackTrace(false)
+public class HandlerDispatchEvent extends Event {
+  @Label("Route")
+  public String route;
+
+  @Label("Handler Class")
+  public Class<?> handlerClass;
+
+  @Label("Method")
+  public String method;
+
+  @Label("Path")
+  public String path;
+}
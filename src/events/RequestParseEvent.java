@@ -0,0 +1,33 @@
+package events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("httpserver.RequestParse")
+@Label("Request Parse")
+@Category("HTTP Server")
+@Description("Parsing and validation of a request line and header block that has already been read.")
+@StackTrace(false)
+public class RequestParseEvent extends Event {
+  @Label("Method")
+  public String method;
+
+  @Label("Target")
+  public String target;
+
+  @Label("Version")
+  public String version;
+
+  @Label("Header Block Size")
+  @DataAmount
+  public int headerBytes;
+
+  @Label("Error Status")
+  @Description("Status code of the error the request was rejected with, 0 if it was valid.")
+  public int errorStatus;
+}
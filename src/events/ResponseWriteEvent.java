@@ -0,0 +1,26 @@
+package events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("httpserver.ResponseWrite")
+@Label("Response Write")
+@Category("HTTP Server")
+@Description("Writing a response to the connection. With the NIO engine the response is only queued for the event loop, " +
+  "and a pipelined response that fits in the batch of the blocking engines is sent with a later one, so the event can end " +
+  "before its bytes reach the socket.")
+@StackTrace(false)
+public class ResponseWriteEvent extends Event {
+  @Label("Status")
+  public int status;
+
+  @Label("Bytes")
+  @Description("Header block and body, chunk framing excluded.")
+  @DataAmount
+  public long bytes;
+}
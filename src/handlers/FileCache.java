@@ -0,0 +1,280 @@
+package handlers;
+
+import metrics.MetricRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+public class FileCache implements Closeable {
+  private static final int EVICTION_SAMPLE_SIZE = 16;
+
+  private final long maximumSize;
+  private final long maximumEntrySize;
+  private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+  private final Map<Path, Object> loading = new HashMap<>();
+  private final Map<Path, WatchKey> watchedDirectories = new ConcurrentHashMap<>();
+  private final WatchService watchService;
+  private final AtomicLong clock = new AtomicLong();
+  private Iterator<Map.Entry<Path, Entry>> evictionHand;
+  private Thread watcher;
+  private long size;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public FileCache(long maximumSize, long maximumEntrySize) {
+    this.maximumSize = maximumSize;
+    this.maximumEntrySize = maximumEntrySize;
+    try {
+      this.watchService = FileSystems.getDefault().newWatchService();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not start file cache", e);
+    }
+  }
+
+  public Entry get(Path file) throws IOException {
+    Entry cached = entries.get(file);
+    if (cached != null) {
+      cached.lastAccess = clock.incrementAndGet();
+      hits.increment();
+      return cached;
+    }
+
+    Object load = new Object();
+    synchronized (this) {
+      loading.put(file, load);
+    }
+
+    misses.increment();
+    try {
+      if (!Files.exists(file))
+        return null;
+
+      watch(file.getParent());
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      if (!attributes.isRegularFile() || attributes.size() > maximumEntrySize || !Files.isReadable(file))
+        return null;
+
+      Entry entry = new Entry(Files.readAllBytes(file), attributes, isReadableFile(getPrecompressedSibling(file)));
+      if (entry.content.length <= maximumEntrySize)
+        put(file, entry, load);
+      return entry;
+    } finally {
+      synchronized (this) {
+        loading.remove(file, load);
+      }
+    }
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  public void registerMetrics(MetricRegistry registry) {
+    registry.counter("httpserver_file_cache_hits_total", "File cache lookups answered from memory.", this::getHits);
+    registry.counter("httpserver_file_cache_misses_total", "File cache lookups that went to disk.", this::getMisses);
+    registry.counter("httpserver_file_cache_evictions_total", "Entries evicted to stay within the cache size.", this::getEvictions);
+    registry.gauge("httpserver_file_cache_bytes", "Bytes of file content held by the cache.", this::getSize);
+    registry.gauge("httpserver_file_cache_entries", "Files held by the cache.", this::getNumberOfEntries);
+  }
+
+  public synchronized long getSize() {
+    return size;
+  }
+
+  public int getNumberOfEntries() {
+    return entries.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  // Only cache what was read if the file has not been invalidated since the lookup missed,
+  // otherwise a change reported while the file was being read would be overwritten with stale content.
+  private synchronized void put(Path file, Entry entry, Object load) {
+    if (entry.content.length > maximumSize || loading.get(file) != load)
+      return;
+
+    entry.lastAccess = clock.incrementAndGet();
+    Entry previous = entries.put(file, entry);
+    if (previous != null)
+      size -= previous.content.length;
+    size += entry.content.length;
+
+    while (size > maximumSize && evictLeastRecentlyUsed(entry));
+  }
+
+  // Approximate LRU: compares the next few entries after the ones sampled by the previous eviction and evicts the
+  // least recently used of them, so that a hit only stamps its entry instead of reordering a shared list under a lock.
+  private boolean evictLeastRecentlyUsed(Entry inserted) {
+    Map.Entry<Path, Entry> eldest = null;
+    int candidates = Math.min(EVICTION_SAMPLE_SIZE, entries.size());
+    for (int i = 0; i < candidates; i++) {
+      if (evictionHand == null || !evictionHand.hasNext())
+        evictionHand = entries.entrySet().iterator();
+      if (!evictionHand.hasNext())
+        return false;
+
+      Map.Entry<Path, Entry> candidate = evictionHand.next();
+      if (candidate.getValue() != inserted && (eldest == null || candidate.getValue().lastAccess < eldest.getValue().lastAccess))
+        eldest = candidate;
+    }
+
+    if (eldest == null)
+      return entries.size() > 1;
+
+    if (entries.remove(eldest.getKey(), eldest.getValue())) {
+      size -= eldest.getValue().content.length;
+      evictions.increment();
+    }
+    return true;
+  }
+
+  synchronized void invalidate(Path file) {
+    loading.remove(file);
+    Entry removed = entries.remove(file);
+    if (removed != null)
+      size -= removed.content.length;
+
+    // The entry of foo.html remembers whether foo.html.gz exists, so a change of the sibling invalidates it too.
+    String name = file.getFileName().toString();
+    if (name.endsWith(".gz") && name.length() > 3)
+      invalidate(file.resolveSibling(name.substring(0, name.length() - 3)));
+  }
+
+  static Path getPrecompressedSibling(Path file) {
+    return file.resolveSibling(file.getFileName() + ".gz");
+  }
+
+  static boolean isReadableFile(Path file) {
+    return Files.isRegularFile(file) && Files.isReadable(file);
+  }
+
+  synchronized void invalidateAll() {
+    loading.clear();
+    entries.clear();
+    size = 0;
+  }
+
+  private synchronized void invalidateDirectory(Path directory) {
+    loading.keySet().removeIf(file -> directory.equals(file.getParent()));
+    for (Iterator<Map.Entry<Path, Entry>> i = entries.entrySet().iterator(); i.hasNext(); ) {
+      Map.Entry<Path, Entry> entry = i.next();
+      if (directory.equals(entry.getKey().getParent())) {
+        size -= entry.getValue().content.length;
+        i.remove();
+      }
+    }
+  }
+
+  private void watch(Path directory) throws IOException {
+    if (directory == null || watchedDirectories.containsKey(directory))
+      return;
+
+    startWatcher();
+
+    try {
+      watchedDirectories.computeIfAbsent(directory, this::register);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private synchronized void startWatcher() {
+    if (watcher != null)
+      return;
+
+    watcher = new Thread(this::processEvents, "file-cache-watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  private WatchKey register(Path directory) {
+    try {
+      return directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void processEvents() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        Path directory = (Path) key.watchable();
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == OVERFLOW)
+            invalidateAll();
+          else
+            invalidate(directory.resolve((Path) event.context()));
+        }
+
+        if (!key.reset()) {
+          watchedDirectories.remove(directory);
+          invalidateDirectory(directory);
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException ignored) {}
+  }
+
+  public static class Entry {
+    private final byte[] content;
+    private final BasicFileAttributes attributes;
+    private final boolean precompressed;
+    private volatile long lastAccess;
+
+    Entry(byte[] content, BasicFileAttributes attributes, boolean precompressed) {
+      this.content = content;
+      this.attributes = attributes;
+      this.precompressed = precompressed;
+    }
+
+    public ByteBuffer getContent() {
+      return ByteBuffer.wrap(content);
+    }
+
+    public BasicFileAttributes getAttributes() {
+      return attributes;
+    }
+
+    /**
+     * Whether a readable foo.gz sibling existed when this entry was loaded.
+     */
+    public boolean hasPrecompressedSibling() {
+      return precompressed;
+    }
+  }
+}
@@ -1,32 +1,53 @@
 package handlers;
 
+import core.BodyPart;
+import core.FileRegion;
 import core.Handler;
 import core.Request;
 import core.Response;
+import core.ResponseCompressor;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 import static core.HttpStatusCode.NOT_FOUND;
+import static core.HttpStatusCode.NOT_MODIFIED;
 import static core.HttpStatusCode.OK;
+import static core.HttpStatusCode.PARTIAL_CONTENT;
+import static core.HttpStatusCode.REQUESTED_RANGE_NOT_SATISFIABLE;
 import static util.Helper.combinePaths;
+import static util.Helper.formatHttpDate;
 import static util.Helper.getServerTime;
+import static util.Helper.parseHttpDate;
 
 public class FileSystemHandler extends Handler {
 
+  private static final int MAXIMUM_RANGES = 16;
+
   private String documentRoot;
+  private FileCache fileCache;
 
   public FileSystemHandler(String documentRoot) {
     this.documentRoot = documentRoot;
   }
 
+  public FileSystemHandler(String documentRoot, FileCache fileCache) {
+    this(documentRoot);
+    this.fileCache = fileCache;
+  }
+
   @Override
   public void handle(Request request, Response response) {
     if (response.responseStatusCode != null)
@@ -36,27 +57,196 @@ public class FileSystemHandler extends Handler {
       case "GET":
       case "HEAD":
         try {
-          response.setBody(browsePath(request.requestURI, response.bodyCharset));
-          response.responseStatusCode = OK;
+          browsePath(request, response);
         } catch (IOException e) {
           response.setBody("<div style=\"text-align: center;\"><h1 style=\"color: red;\">404 Error</h1><br>File not found</div>");
           response.responseStatusCode = NOT_FOUND;
+          response.setHeader("Last-modified", getServerTime());
         }
 
-        response.setHeader("Content-Type", "text/html; charset=" + response.bodyCharset);
-        response.setHeader("Last-modified", getServerTime());
+        if (response.responseStatusCode != NOT_MODIFIED && response.getHeader("Content-Type") == null)
+          response.setHeader("Content-Type", getContentType(response));
         break;
       default:
         break;
     }
   }
 
-  public String browsePath(URI requestURI, Charset charset) throws IOException {
-    File localFile = covertRequestURIToLocalFile(requestURI);
-    if (localFile.isDirectory())
-      return generateDirectoryListingHTML(requestURI);
-    else
-      return new String(Files.readAllBytes(localFile.toPath()), charset);
+  public void browsePath(Request request, Response response) throws IOException {
+    File localFile = covertRequestURIToLocalFile(request.requestURI);
+    Path path = localFile.toPath();
+    FileCache.Entry cached = fileCache == null ? null : fileCache.get(path);
+
+    if (cached == null && localFile.isDirectory()) {
+      response.setBody(generateDirectoryListingHTML(request.requestURI));
+      response.responseStatusCode = OK;
+      response.setHeader("Last-modified", getServerTime());
+      return;
+    }
+
+    if (cached == null && !Files.isReadable(path))
+      throw new NoSuchFileException(localFile.getPath());
+
+    boolean isPrecompressed = false;
+    Path precompressed = FileCache.getPrecompressedSibling(path);
+    if (cached != null ? cached.hasPrecompressedSibling() : FileCache.isReadableFile(precompressed)) {
+      ResponseCompressor.addVary(response);
+      if (ResponseCompressor.isAcceptable(request.getHeader("Accept-Encoding"), "gzip")) {
+        path = precompressed;
+        cached = fileCache == null ? null : fileCache.get(precompressed);
+        isPrecompressed = true;
+      }
+    }
+
+    BasicFileAttributes attributes = cached != null ? cached.getAttributes() : Files.readAttributes(path, BasicFileAttributes.class);
+    String entityTag = generateEntityTag(attributes);
+    response.setHeader("ETag", entityTag);
+    response.setHeader("Last-Modified", formatHttpDate(attributes.lastModifiedTime().toMillis()));
+
+    if (isNotModified(request, entityTag, attributes.lastModifiedTime().toMillis())) {
+      response.responseStatusCode = NOT_MODIFIED;
+      return;
+    }
+
+    if (isPrecompressed)
+      response.setHeader("Content-Encoding", "gzip");
+    response.setHeader("Accept-Ranges", "bytes");
+    long size = attributes.size();
+    List<long[]> ranges = null;
+    if ("GET".equals(request.requestMethod) && isRangeApplicable(request, entityTag, attributes.lastModifiedTime().toMillis()))
+      ranges = parseRanges(request.getHeader("Range"), size);
+
+    if (ranges == null) {
+      response.responseStatusCode = OK;
+      if (cached != null)
+        response.setBody(cached.getContent());
+      else
+        response.setBody(new FileRegion(path, 0, size));
+    } else if (ranges.isEmpty()) {
+      response.responseStatusCode = REQUESTED_RANGE_NOT_SATISFIABLE;
+      response.setHeader("Content-Range", "bytes */" + size);
+      response.setBody(REQUESTED_RANGE_NOT_SATISFIABLE.toString());
+    } else if (ranges.size() == 1) {
+      long[] range = ranges.get(0);
+      response.responseStatusCode = PARTIAL_CONTENT;
+      response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + size);
+      response.setBody(getRangeContent(path, cached, range));
+    } else {
+      String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong()) + Long.toHexString(System.nanoTime());
+      List<BodyPart> parts = new ArrayList<>();
+      for (long[] range : ranges) {
+        parts.add(encode("--" + boundary + "\r\n" +
+          "Content-Type: " + getContentType(response) + "\r\n" +
+          "Content-Range: bytes " + range[0] + "-" + range[1] + "/" + size + "\r\n\r\n"));
+        parts.add(getRangeContent(path, cached, range));
+        parts.add(encode("\r\n"));
+      }
+      parts.add(encode("--" + boundary + "--\r\n"));
+
+      response.responseStatusCode = PARTIAL_CONTENT;
+      response.setHeader("Content-Type", "multipart/byteranges; boundary=" + boundary);
+      response.setBody(parts);
+    }
+  }
+
+  public boolean isRangeApplicable(Request request, String entityTag, long lastModified) {
+    String ifRange = request.getHeader("If-Range");
+    if (ifRange == null)
+      return true;
+
+    ifRange = ifRange.trim();
+    if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+      return ifRange.equals(entityTag);
+
+    Long date = parseHttpDate(ifRange);
+    return date != null && date / 1000 == lastModified / 1000;
+  }
+
+  public List<long[]> parseRanges(String range, long size) {
+    if (range == null || !range.regionMatches(true, 0, "bytes=", 0, 6))
+      return null;
+
+    String[] specifications = range.substring(6).split(",");
+    if (specifications.length > MAXIMUM_RANGES)
+      return null;
+
+    List<long[]> ranges = new ArrayList<>();
+    for (String specification : specifications) {
+      int dash = specification.indexOf('-');
+      if (dash == -1)
+        return null;
+
+      String first = specification.substring(0, dash).trim();
+      String last = specification.substring(dash + 1).trim();
+      boolean isSuffix = first.isEmpty();
+      if (isSuffix ? !isNumber(last) : !isNumber(first) || !last.isEmpty() && !isNumber(last))
+        return null;
+
+      try {
+        if (isSuffix) {
+          long suffixLength = Long.parseLong(last);
+          if (suffixLength > 0 && size > 0)
+            ranges.add(new long[] {Math.max(0, size - suffixLength), size - 1});
+        } else {
+          long firstPosition = Long.parseLong(first);
+          long lastPosition = last.isEmpty() ? size - 1 : Long.parseLong(last);
+          if (lastPosition < firstPosition)
+            return null;
+          if (firstPosition < size)
+            ranges.add(new long[] {firstPosition, Math.min(lastPosition, size - 1)});
+        }
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return ranges;
+  }
+
+  private BodyPart getRangeContent(Path path, FileCache.Entry cached, long[] range) {
+    if (cached == null)
+      return new FileRegion(path, range[0], range[1] - range[0] + 1);
+    return BodyPart.of(cached.getContent().slice((int) range[0], (int) (range[1] - range[0] + 1)));
+  }
+
+  private String getContentType(Response response) {
+    return "text/html; charset=" + response.bodyCharset;
+  }
+
+  private static BodyPart encode(String value) {
+    return BodyPart.of(value.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  private static boolean isNumber(String value) {
+    if (value.isEmpty())
+      return false;
+    for (int i = 0; i < value.length(); i++)
+      if (value.charAt(i) < '0' || value.charAt(i) > '9')
+        return false;
+    return true;
+  }
+
+  public String generateEntityTag(BasicFileAttributes attributes) {
+    Object fileKey = attributes.fileKey();
+    return "\"" + Long.toHexString(attributes.size()) + "-" +
+      Long.toHexString(attributes.lastModifiedTime().toMillis()) +
+      (fileKey == null ? "" : "-" + Integer.toHexString(fileKey.hashCode())) + "\"";
+  }
+
+  public boolean isNotModified(Request request, String entityTag, long lastModified) {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      for (String candidate : ifNoneMatch.split(",")) {
+        String tag = candidate.trim();
+        if (tag.startsWith("W/"))
+          tag = tag.substring(2);
+        if (tag.equals("*") || tag.equals(entityTag))
+          return true;
+      }
+      return false;
+    }
+
+    Long ifModifiedSince = parseHttpDate(request.getHeader("If-Modified-Since"));
+    return ifModifiedSince != null && lastModified / 1000 <= ifModifiedSince / 1000;
   }
 
   public String generateDirectoryListingHTML(URI requestURI) {
@@ -78,6 +268,10 @@ public class FileSystemHandler extends Handler {
     return documentRoot;
   }
 
+  public FileCache getFileCache() {
+    return fileCache;
+  }
+
   public List<String> generateDirectoryListing(URI requestURI) {
     File localFile = covertRequestURIToLocalFile(requestURI);
 
@@ -0,0 +1,27 @@
+package handlers;
+
+import core.Handler;
+import core.Request;
+import core.Response;
+import metrics.MetricRegistry;
+
+import static core.HttpStatusCode.OK;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class MetricsHandler extends Handler {
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final MetricRegistry registry;
+
+  public MetricsHandler(MetricRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  protected void handle(Request request, Response response) {
+    response.responseStatusCode = OK;
+    response.setBody(registry.toPrometheusFormat().getBytes(UTF_8));
+    response.setHeader("Content-Type", CONTENT_TYPE);
+    response.endHandlerChain();
+  }
+}
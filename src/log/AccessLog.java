@@ -0,0 +1,265 @@
+package log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Access log in the Common or Combined Log Format. Request threads copy a record into a preallocated slot
+ * of a bounded multi-producer ring buffer (a CAS on the tail and a store of the slot sequence, which also
+ * wakes the writer if it is parked) and return; a single background thread formats published records and
+ * appends them to a RollingFile in batches. When the ring is full a record is either dropped and counted
+ * or its producer wakes the writer and waits for space, depending on the OverflowPolicy. Lines formatted
+ * by the caller can be passed through the same buffer with write.
+ */
+public class AccessLog implements Closeable {
+  private static final int MAXIMUM_BATCH_SIZE = 256;
+  private static final long IDLE_PAUSE = 10_000_000;
+  private static final long BLOCK_PAUSE = 100_000;
+  private static final DateTimeFormatter DATE_FORMAT =
+    DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(ZoneId.systemDefault());
+
+  private final Entry[] entries;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private final LongAdder dropped = new LongAdder();
+  private final LogFormat format;
+  private final OverflowPolicy policy;
+  private final RollingFile file;
+  private final Thread writer;
+  private final StringBuilder batch = new StringBuilder();
+  private volatile boolean running = true;
+  private volatile boolean writerParked;
+  private long head;
+  private long cachedSecond = -1;
+  private String cachedDate;
+
+  public AccessLog(Path path, LogFormat format, int capacity, OverflowPolicy policy, long maximumFileSize, int maximumFiles) throws IOException {
+    this(path, format, capacity, policy, maximumFileSize, maximumFiles, true);
+  }
+
+  AccessLog(Path path, LogFormat format, int capacity, OverflowPolicy policy, long maximumFileSize, int maximumFiles, boolean start) throws IOException {
+    int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.entries = new Entry[size];
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      entries[i] = new Entry();
+      sequences.set(i, i);
+    }
+    this.mask = size - 1;
+    this.format = format;
+    this.policy = policy;
+    this.file = new RollingFile(path, maximumFileSize, maximumFiles);
+    this.writer = new Thread(this::drain, "access-log");
+    writer.setDaemon(true);
+    if (start)
+      writer.start();
+  }
+
+  public boolean log(InetAddress address, long time, String method, String target, String version, int status, long bytes, String referer, String userAgent) {
+    long sequence = claim();
+    if (sequence == -1) {
+      dropped.increment();
+      return false;
+    }
+
+    int index = (int) sequence & mask;
+    Entry entry = entries[index];
+    entry.line = null;
+    entry.address = address;
+    entry.time = time;
+    entry.method = method;
+    entry.target = target;
+    entry.version = version;
+    entry.status = status;
+    entry.bytes = bytes;
+    entry.referer = referer;
+    entry.userAgent = userAgent;
+    publish(index, sequence);
+    return true;
+  }
+
+  public boolean write(String line) {
+    long sequence = claim();
+    if (sequence == -1) {
+      dropped.increment();
+      return false;
+    }
+
+    int index = (int) sequence & mask;
+    entries[index].line = line;
+    publish(index, sequence);
+    return true;
+  }
+
+  public long getDroppedRecords() {
+    return dropped.sum();
+  }
+
+  @Override
+  public void close() throws IOException {
+    running = false;
+    if (writer.isAlive()) {
+      LockSupport.unpark(writer);
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    file.close();
+  }
+
+  void start() {
+    writer.start();
+  }
+
+  private void publish(int index, long sequence) {
+    sequences.set(index, sequence + 1);
+    if (writerParked) {
+      writerParked = false;
+      LockSupport.unpark(writer);
+    }
+  }
+
+  private long claim() {
+    while (running) {
+      long sequence = tail.get();
+      long available = sequences.get((int) sequence & mask);
+      if (available == sequence) {
+        if (tail.compareAndSet(sequence, sequence + 1))
+          return sequence;
+      } else if (available < sequence) {
+        if (policy == OverflowPolicy.DROP)
+          return -1;
+        LockSupport.unpark(writer);
+        LockSupport.parkNanos(BLOCK_PAUSE);
+      }
+    }
+    return -1;
+  }
+
+  private void drain() {
+    while (true) {
+      boolean stopping = !running;
+      int count = 0;
+      while (count < MAXIMUM_BATCH_SIZE && sequences.get((int) head & mask) == head + 1) {
+        int index = (int) head & mask;
+        format(entries[index]);
+        entries[index].clear();
+        sequences.lazySet(index, head + entries.length);
+        head++;
+        count++;
+      }
+
+      if (count > 0)
+        flush(count);
+      else if (stopping)
+        return;
+      else
+        park();
+    }
+  }
+
+  private void park() {
+    writerParked = true;
+    if (sequences.get((int) head & mask) != head + 1 && running)
+      LockSupport.parkNanos(IDLE_PAUSE);
+    writerParked = false;
+  }
+
+  private void flush(int count) {
+    try {
+      file.write(ByteBuffer.wrap(batch.toString().getBytes(UTF_8)));
+    } catch (IOException e) {
+      dropped.add(count);
+    }
+    batch.setLength(0);
+  }
+
+  private void format(Entry entry) {
+    if (entry.line != null) {
+      batch.append(entry.line).append('\n');
+      return;
+    }
+
+    batch.append(entry.address == null ? "-" : entry.address.getHostAddress()).append(" - - [");
+    long second = entry.time / 1000;
+    if (second != cachedSecond) {
+      cachedDate = DATE_FORMAT.format(Instant.ofEpochSecond(second));
+      cachedSecond = second;
+    }
+    batch.append(cachedDate).append("] \"");
+    if (entry.method == null) {
+      batch.append('-');
+    } else {
+      escape(entry.method);
+      batch.append(' ');
+      escape(entry.target);
+      batch.append(' ');
+      escape(entry.version);
+    }
+    batch.append("\" ").append(entry.status).append(' ');
+    if (entry.bytes > 0)
+      batch.append(entry.bytes);
+    else
+      batch.append('-');
+
+    if (format == LogFormat.COMBINED) {
+      batch.append(" \"");
+      escape(entry.referer);
+      batch.append("\" \"");
+      escape(entry.userAgent);
+      batch.append('"');
+    }
+    batch.append('\n');
+  }
+
+  private void escape(String value) {
+    if (value == null) {
+      batch.append('-');
+      return;
+    }
+
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\')
+        batch.append('\\').append(c);
+      else if (c < 0x20 || c == 0x7f)
+        batch.append("\\x").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+      else
+        batch.append(c);
+    }
+  }
+
+  private static class Entry {
+    String line;
+    InetAddress address;
+    long time;
+    String method;
+    String target;
+    String version;
+    int status;
+    long bytes;
+    String referer;
+    String userAgent;
+
+    void clear() {
+      address = null;
+      line = method = target = version = referer = userAgent = null;
+    }
+  }
+}
@@ -0,0 +1,5 @@
+package log;
+
+public enum LogFormat {
+  COMMON, COMBINED
+}
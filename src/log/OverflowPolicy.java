@@ -0,0 +1,5 @@
+package log;
+
+public enum OverflowPolicy {
+  DROP, BLOCK
+}
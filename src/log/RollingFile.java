@@ -0,0 +1,72 @@
+package log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only file that is renamed to file.1 (shifting older files to file.2 ... file.maximumFiles and
+ * deleting the oldest) before a write would take it past maximumSize.
+ */
+class RollingFile implements Closeable {
+  private final Path path;
+  private final long maximumSize;
+  private final int maximumFiles;
+  private FileChannel channel;
+  private long size;
+
+  RollingFile(Path path, long maximumSize, int maximumFiles) throws IOException {
+    this.path = path;
+    this.maximumSize = maximumSize;
+    this.maximumFiles = maximumFiles;
+    open();
+  }
+
+  void write(ByteBuffer buffer) throws IOException {
+    if (maximumSize > 0 && size > 0 && size + buffer.remaining() > maximumSize)
+      rotate();
+
+    size += buffer.remaining();
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void rotate() throws IOException {
+    channel.close();
+    try {
+      if (maximumFiles > 0) {
+        Files.deleteIfExists(rotated(maximumFiles));
+        for (int i = maximumFiles - 1; i > 0; i--)
+          if (Files.exists(rotated(i)))
+            Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(path, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+      } else {
+        Files.deleteIfExists(path);
+      }
+    } finally {
+      open();
+    }
+  }
+
+  private void open() throws IOException {
+    channel = FileChannel.open(path, CREATE, WRITE, APPEND);
+    size = channel.size();
+  }
+
+  private Path rotated(int index) {
+    return path.resolveSibling(path.getFileName() + "." + index);
+  }
+}
@@ -0,0 +1,85 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of non-negative values (latencies in nanoseconds). Values below 64 get
+ * a bucket each, larger values share a bucket with neighbours that differ by less than 1/32 of their
+ * magnitude, so recording is an index computation, one atomic increment and one striped add. Count and
+ * maximum are derived from the buckets when the histogram is read.
+ */
+public class Histogram {
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int HALF = SUB_BUCKETS / 2;
+
+  private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF);
+  private final LongAdder sum = new LongAdder();
+
+  public void record(long value) {
+    value = Math.max(0, value);
+    counts.incrementAndGet(indexOf(value));
+    sum.add(value);
+  }
+
+  public long getCount() {
+    long result = 0;
+    for (int i = 0; i < counts.length(); i++)
+      result += counts.get(i);
+    return result;
+  }
+
+  public long getSum() {
+    return sum.sum();
+  }
+
+  public long getMaximum() {
+    for (int i = counts.length() - 1; i >= 0; i--)
+      if (counts.get(i) > 0)
+        return highestValueOf(i);
+    return 0;
+  }
+
+  public long getCountAtOrBelow(long value) {
+    long result = 0;
+    for (int i = 0; i < counts.length() && highestValueOf(i) <= value; i++)
+      result += counts.get(i);
+    return result;
+  }
+
+  public long getValueAtPercentile(double percentile) {
+    long total = 0;
+    long[] snapshot = new long[counts.length()];
+    for (int i = 0; i < snapshot.length; i++)
+      total += snapshot[i] = counts.get(i);
+    if (total == 0)
+      return 0;
+
+    long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      seen += snapshot[i];
+      if (seen >= target)
+        return highestValueOf(i);
+    }
+    return 0;
+  }
+
+  static int indexOf(long value) {
+    if (value < SUB_BUCKETS)
+      return (int) value;
+
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+    return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+  }
+
+  static long highestValueOf(int index) {
+    if (index < SUB_BUCKETS)
+      return index;
+
+    int shift = (index - SUB_BUCKETS) / HALF + 1;
+    long subBucket = (index - SUB_BUCKETS) % HALF + HALF;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
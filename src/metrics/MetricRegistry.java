@@ -0,0 +1,142 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Named counters, gauges and histograms rendered in the Prometheus text exposition format. Instruments
+ * are created once and kept by the caller, so recording never goes through the registry.
+ */
+public class MetricRegistry {
+  private static final double NANOSECONDS_PER_SECOND = 1e9;
+  private static final long[] BUCKETS = {
+    500_000L, 1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L,
+    100_000_000L, 250_000_000L, 500_000_000L, 1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+  };
+
+  private final Map<String, Family> families = new LinkedHashMap<>();
+  private final Map<String, Object> series = new ConcurrentHashMap<>();
+
+  public LongAdder counter(String name, String help, String... labels) {
+    return (LongAdder) register(name, help, "counter", labels, LongAdder::new);
+  }
+
+  public Histogram histogram(String name, String help, String... labels) {
+    return (Histogram) register(name, help, "histogram", labels, Histogram::new);
+  }
+
+  public void counter(String name, String help, LongSupplier value, String... labels) {
+    register(name, help, "counter", labels, () -> value);
+  }
+
+  public void gauge(String name, String help, LongSupplier value, String... labels) {
+    register(name, help, "gauge", labels, () -> value);
+  }
+
+  public synchronized void writeTo(StringBuilder out) {
+    for (Family family : families.values()) {
+      out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+      out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+      for (int i = 0; i < family.labels.size(); i++)
+        write(out, family, family.labels.get(i), family.instruments.get(i));
+    }
+  }
+
+  public String toPrometheusFormat() {
+    StringBuilder out = new StringBuilder();
+    writeTo(out);
+    return out.toString();
+  }
+
+  private Object register(String name, String help, String type, String[] labels, Supplier<Object> factory) {
+    String key = type + " " + name + formatLabels(labels);
+    Object instrument = series.get(key);
+    if (instrument != null)
+      return instrument;
+
+    synchronized (this) {
+      instrument = series.get(key);
+      if (instrument != null)
+        return instrument;
+
+      Family family = families.computeIfAbsent(name, n -> new Family(n, help, type));
+      if (!family.type.equals(type))
+        throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+
+      instrument = factory.get();
+      family.labels.add(formatLabels(labels));
+      family.instruments.add(instrument);
+      series.put(key, instrument);
+      return instrument;
+    }
+  }
+
+  private void write(StringBuilder out, Family family, String labels, Object instrument) {
+    if (instrument instanceof LongAdder) {
+      out.append(family.name).append(labels).append(' ').append(((LongAdder) instrument).sum()).append('\n');
+    } else if (instrument instanceof LongSupplier) {
+      out.append(family.name).append(labels).append(' ').append(((LongSupplier) instrument).getAsLong()).append('\n');
+    } else {
+      Histogram histogram = (Histogram) instrument;
+      long count = histogram.getCount();
+      for (long bucket : BUCKETS)
+        writeBucket(out, family.name, labels, Double.toString(bucket / NANOSECONDS_PER_SECOND), Math.min(count, histogram.getCountAtOrBelow(bucket)));
+      writeBucket(out, family.name, labels, "+Inf", count);
+      out.append(family.name).append("_sum").append(labels).append(' ').append(histogram.getSum() / NANOSECONDS_PER_SECOND).append('\n');
+      out.append(family.name).append("_count").append(labels).append(' ').append(count).append('\n');
+    }
+  }
+
+  private static void writeBucket(StringBuilder out, String name, String labels, String bound, long count) {
+    out.append(name).append("_bucket");
+    if (labels.isEmpty())
+      out.append('{');
+    else
+      out.append(labels, 0, labels.length() - 1).append(',');
+    out.append("le=\"").append(bound).append("\"} ").append(count).append('\n');
+  }
+
+  static String formatLabels(String[] labels) {
+    if (labels.length % 2 != 0)
+      throw new IllegalArgumentException("Labels must be given as name and value pairs");
+    if (labels.length == 0)
+      return "";
+
+    StringBuilder result = new StringBuilder("{");
+    for (int i = 0; i < labels.length; i += 2) {
+      if (i > 0)
+        result.append(',');
+      result.append(labels[i]).append("=\"");
+      for (char c : labels[i + 1].toCharArray()) {
+        if (c == '\\' || c == '"')
+          result.append('\\').append(c);
+        else if (c == '\n')
+          result.append("\\n");
+        else
+          result.append(c);
+      }
+      result.append('"');
+    }
+    return result.append('}').toString();
+  }
+
+  private static class Family {
+    final String name;
+    final String help;
+    final String type;
+    final List<String> labels = new ArrayList<>();
+    final List<Object> instruments = new ArrayList<>();
+
+    Family(String name, String help, String type) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+    }
+  }
+}
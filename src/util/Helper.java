@@ -1,10 +1,26 @@
 package util;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
 import java.util.Calendar;
+import java.util.Locale;
 
 public class Helper {
+  private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+  private static final DateTimeFormatter[] OBSOLETE_HTTP_DATES = {
+    new DateTimeFormatterBuilder().appendPattern("EEEE, dd-MMM-").appendValueReduced(ChronoField.YEAR, 2, 2, 1970)
+      .appendPattern(" HH:mm:ss 'GMT'").toFormatter(Locale.US).withZone(ZoneOffset.UTC),
+    DateTimeFormatter.ofPattern("EEE MMM ppd HH:mm:ss yyyy", Locale.US).withZone(ZoneOffset.UTC)
+  };
 
   public static String combinePaths(String path1, String path2) {
     File file1 = new File(path1);
@@ -17,4 +33,33 @@ public class Helper {
     SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz");
     return dateFormat.format(calendar.getTime());
   }
+
+  public static String formatHttpDate(long milliseconds) {
+    return HTTP_DATE.format(Instant.ofEpochMilli(milliseconds));
+  }
+
+  public static Long parseHttpDate(String date) {
+    if (date == null)
+      return null;
+
+    try {
+      return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+    } catch (DateTimeParseException ignored) {}
+
+    for (DateTimeFormatter format : OBSOLETE_HTTP_DATES) {
+      try {
+        return ZonedDateTime.parse(date.trim(), format).toInstant().toEpochMilli();
+      } catch (DateTimeParseException ignored) {}
+    }
+    return null;
+  }
+
+  public static void safeClose(Closeable closeable) {
+    if (closeable == null)
+      return;
+
+    try {
+      closeable.close();
+    } catch (IOException ignored) {}
+  }
 }
@@ -0,0 +1,208 @@
+package util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+public class HttpHeaders extends AbstractMap<String, String> {
+  public static final String HOST = "Host";
+  public static final String CONTENT_LENGTH = "Content-Length";
+  public static final String CONTENT_TYPE = "Content-Type";
+  public static final String CONNECTION = "Connection";
+  public static final String TRANSFER_ENCODING = "Transfer-Encoding";
+  public static final String REFERER = "Referer";
+  public static final String USER_AGENT = "User-Agent";
+
+  private static final Map<String, String> FOLDED_NAMES = new HashMap<>();
+
+  static {
+    for (String name : new String[] {HOST, CONTENT_LENGTH, CONTENT_TYPE, CONNECTION, TRANSFER_ENCODING, REFERER, USER_AGENT}) {
+      String folded = name.toLowerCase(Locale.ROOT).intern();
+      FOLDED_NAMES.put(name, folded);
+      FOLDED_NAMES.put(folded, folded);
+    }
+  }
+
+  private final LinkedHashMap<String, Header> headers = new LinkedHashMap<>();
+  private EntrySet entrySet;
+  private Names names;
+
+  @Override
+  public String get(Object name) {
+    Header header = name instanceof String ? headers.get(fold((String) name)) : null;
+    return header == null ? null : header.getValue();
+  }
+
+  @Override
+  public boolean containsKey(Object name) {
+    return name instanceof String && headers.containsKey(fold((String) name));
+  }
+
+  @Override
+  public String put(String name, String value) {
+    String folded = fold(name);
+    Header header = headers.get(folded);
+    if (header == null) {
+      headers.put(folded, new Header(name, value));
+      return null;
+    }
+    return header.setValue(value);
+  }
+
+  public void add(String name, String value) {
+    String folded = fold(name);
+    Header header = headers.get(folded);
+    if (header == null)
+      headers.put(folded, new Header(name, value));
+    else
+      header.values.add(value);
+  }
+
+  public List<String> getAll(String name) {
+    Header header = headers.get(fold(name));
+    return header == null ? Collections.emptyList() : Collections.unmodifiableList(header.values);
+  }
+
+  @Override
+  public String remove(Object name) {
+    Header header = name instanceof String ? headers.remove(fold((String) name)) : null;
+    return header == null ? null : header.getValue();
+  }
+
+  @Override
+  public int size() {
+    return headers.size();
+  }
+
+  @Override
+  public void clear() {
+    headers.clear();
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    if (entrySet == null)
+      entrySet = new EntrySet();
+    return entrySet;
+  }
+
+  @Override
+  public Set<String> keySet() {
+    if (names == null)
+      names = new Names();
+    return names;
+  }
+
+  static String fold(String name) {
+    String folded = FOLDED_NAMES.get(name);
+    if (folded != null)
+      return folded;
+
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c >= 'A' && c <= 'Z')
+        return name.toLowerCase(Locale.ROOT);
+    }
+    return name;
+  }
+
+  private static class Header implements Entry<String, String> {
+    private final String name;
+    private final List<String> values = new ArrayList<>(1);
+
+    Header(String name, String value) {
+      this.name = name;
+      values.add(value);
+    }
+
+    @Override
+    public String getKey() {
+      return name;
+    }
+
+    @Override
+    public String getValue() {
+      return values.size() == 1 ? values.get(0) : String.join(", ", values);
+    }
+
+    @Override
+    public String setValue(String value) {
+      String previous = getValue();
+      values.clear();
+      values.add(value);
+      return previous;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Entry))
+        return false;
+      Entry<?, ?> entry = (Entry<?, ?>) other;
+      return name.equals(entry.getKey()) && getValue().equals(entry.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode() ^ getValue().hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return name + "=" + getValue();
+    }
+  }
+
+  private class EntrySet extends AbstractSet<Entry<String, String>> {
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<Entry<String, String>> iterator() {
+      return (Iterator<Entry<String, String>>) (Iterator<? extends Entry<String, String>>) headers.values().iterator();
+    }
+
+    @Override
+    public int size() {
+      return headers.size();
+    }
+
+    @Override
+    public void clear() {
+      headers.clear();
+    }
+  }
+
+  private class Names extends AbstractSet<String> {
+    @Override
+    public Iterator<String> iterator() {
+      Iterator<Header> iterator = headers.values().iterator();
+      return new Iterator<String>() {
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public String next() {
+          return iterator.next().name;
+        }
+
+        @Override
+        public void remove() {
+          iterator.remove();
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return headers.size();
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ChunkedOutputStreamTest {
+
+  @Test
+  public void testFlushWritesBufferedBytesAsChunk_RFC7230_4_1() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ChunkedOutputStream chunked = new ChunkedOutputStream(out);
+
+    chunked.write('a');
+    chunked.write("bc".getBytes(ISO_8859_1));
+    chunked.flush();
+    chunked.close();
+
+    assertEquals("3\r\nabc\r\n0\r\n\r\n", out.toString("ISO-8859-1"));
+  }
+
+  @Test
+  public void testNothingIsWrittenAfterLastChunk() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ChunkedOutputStream chunked = new ChunkedOutputStream(out);
+    chunked.write('a');
+    chunked.close();
+
+    try {
+      chunked.write('b');
+      fail("Writing after the last chunk should fail");
+    } catch (IOException expected) {}
+    try {
+      chunked.write("cd".getBytes(ISO_8859_1));
+      fail("Writing after the last chunk should fail");
+    } catch (IOException expected) {}
+    chunked.flush();
+    chunked.close();
+
+    assertEquals("1\r\na\r\n0\r\n\r\n", out.toString("ISO-8859-1"));
+  }
+}
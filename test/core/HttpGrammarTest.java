@@ -0,0 +1,48 @@
+package core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static core.HttpGrammar.*;
+import static org.junit.Assert.*;
+
+public class HttpGrammarTest {
+
+  @Test
+  public void testReplaceMultipleLWSWithSingleSpace_RFC2616_2_2() throws Exception {
+    assertEquals("a: b c d", replaceMultipleLWSWithSingleSpace("a:\t b\r\n c \r\n\t\r\n d"));
+    assertEquals("a: b\r\nc: d", replaceMultipleLWSWithSingleSpace("a: b\r\nc: d"));
+    assertEquals("a: b ", replaceMultipleLWSWithSingleSpace("a: b\r\n "));
+  }
+
+  @Test
+  public void testSameResultsAsRegularExpressions() throws Exception {
+    char[] alphabet = {'a', 'Z', '0', ':', ';', '=', '"', '\\', ' ', '\t', '\r', '\n', '/', '(', '\u0001', '\u007F', '\u00AA', '\uFFFF', '.', 'H', 'T', 'P'};
+    Random random = new Random(2616);
+
+    for (int i = 0; i < 1000; i++) {
+      char[] chars = new char[random.nextInt(12)];
+      for (int j = 0; j < chars.length; j++)
+        chars[j] = alphabet[random.nextInt(alphabet.length)];
+      String value = new String(chars);
+
+      assertEquals(value, HttpRequestRegEx.validateHeader("a:" + value), validateHeader("a:" + value));
+      assertEquals(value, HttpRequestRegEx.validateHeader(value), validateHeader(value));
+      assertEquals(value, HttpRequestRegEx.validateMethod(value), validateMethod(value));
+      assertEquals(value, HttpRequestRegEx.validateHttpVersion("HTTP/" + value), validateHttpVersion("HTTP/" + value));
+      assertEquals(value, HttpRequestRegEx.validateRequestLineFormat(value), validateRequestLineFormat(value));
+      assertEquals(value, HttpRequestRegEx.replaceMultipleLWSWithSingleSpace(value), replaceMultipleLWSWithSingleSpace(value));
+      assertEquals(value, HttpRequestRegEx.getParsedBodyCharset("a;" + value + "; charset=UTF-8"), getParsedBodyCharset("a;" + value + "; charset=UTF-8"));
+      assertEquals(value, HttpRequestRegEx.getParsedBodyCharset("a; charset=" + value), getParsedBodyCharset("a; charset=" + value));
+    }
+  }
+
+  @Test(timeout = 1000)
+  public void testLongQuotedStringIsValidatedInLinearTime() throws Exception {
+    StringBuilder value = new StringBuilder("abc: \"");
+    for (int i = 0; i < 100000; i++)
+      value.append("\\\"");
+    assertFalse(validateHeader(value.append('\u0001').toString()));
+  }
+}
@@ -0,0 +1,137 @@
+package core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static core.HttpStatusCode.BAD_REQUEST;
+import static core.HttpStatusCode.REQUEST_ENTITY_TOO_LARGE;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.Assert.*;
+
+public class MultipartReaderTest {
+  private static final String FORM = "preamble\r\n" +
+    "--AaB03x\r\n" +
+    "Content-Disposition: form-data; name=\"submit-name\"\r\n\r\n" +
+    "Larry\r\n" +
+    "--AaB03x  \r\n" +
+    "Content-Disposition: form-data; name=\"files\"; filename=\"file1.txt\"\r\n" +
+    "Content-Type: text/plain\r\n\r\n" +
+    "--AaB03 contents of \r\n--AaB03file1.txt\r\n" +
+    "--AaB03x--\r\n" +
+    "epilogue";
+
+  RequestParser requestParser;
+  Configuration configuration;
+
+  @Before
+  public void setUp() throws Exception {
+    configuration = new Configuration();
+    requestParser = new RequestParser(configuration);
+  }
+
+  private Request parse(InputStream body) {
+    requestParser.request.requestMethod = "POST";
+    requestParser.parseMultipart(body, "AaB03x");
+    return requestParser.request;
+  }
+
+  private InputStream byteByByte(String content) {
+    return new FilterInputStream(new ByteArrayInputStream(content.getBytes(ISO_8859_1))) {
+      @Override
+      public int read(byte[] bytes, int offset, int length) throws IOException {
+        return super.read(bytes, offset, Math.min(1, length));
+      }
+    };
+  }
+
+  private void assertHttpError(String content, HttpStatusCode error) {
+    try {
+      parse(new ByteArrayInputStream(content.getBytes(ISO_8859_1)));
+      fail();
+    } catch (HttpError e) {
+      assertEquals(error, e.getErrorCode());
+    }
+  }
+
+  @Test
+  public void testPartsAreParsed_RFC7578_4() throws Exception {
+    for (InputStream body : Arrays.asList(new ByteArrayInputStream(FORM.getBytes(ISO_8859_1)), byteByByte(FORM))) {
+      requestParser = new RequestParser(configuration);
+      Request request = parse(body);
+
+      assertEquals(2, request.parts.size());
+      assertEquals("Larry", request.parameters.get("submit-name").get(0));
+      assertNull(request.parameters.get("files"));
+
+      Part file = request.getPart("files");
+      assertEquals("file1.txt", file.getFileName());
+      assertEquals("text/plain", file.getContentType());
+      assertEquals("--AaB03 contents of \r\n--AaB03file1.txt", file.getString());
+      assertTrue(file.isInMemory());
+    }
+  }
+
+  @Test
+  public void testLargePartIsSpooledToDisk() throws Exception {
+    configuration.setPartMemoryThreshold(16);
+    Request request = parse(new ByteArrayInputStream(FORM.getBytes(ISO_8859_1)));
+
+    Part file = request.getPart("files");
+    Path path = file.getFile();
+    assertFalse(file.isInMemory());
+    assertEquals(38, file.getSize());
+    assertEquals("--AaB03 contents of \r\n--AaB03file1.txt", new String(Files.readAllBytes(path), ISO_8859_1));
+
+    request.deleteParts();
+    assertFalse(Files.exists(path));
+  }
+
+  @Test
+  public void testPartSizeLimit() throws Exception {
+    configuration.setMaximumPartSize(16);
+    assertHttpError(FORM, REQUEST_ENTITY_TOO_LARGE);
+  }
+
+  @Test
+  public void testTotalSizeLimit() throws Exception {
+    configuration.setMaximumBodySize(40);
+    assertHttpError(FORM, REQUEST_ENTITY_TOO_LARGE);
+  }
+
+  @Test
+  public void testNumberOfPartsLimit() throws Exception {
+    configuration.setMaximumNumberOfParts(1);
+    assertHttpError(FORM, REQUEST_ENTITY_TOO_LARGE);
+  }
+
+  @Test
+  public void testMissingCloseDelimiterIsBadRequest_RFC2046_5_1_1() throws Exception {
+    assertHttpError(FORM.substring(0, FORM.indexOf("--AaB03x--")), BAD_REQUEST);
+    assertHttpError("--AaB03x\r\nContent-Disposition form-data\r\n\r\n\r\n--AaB03x--", BAD_REQUEST);
+  }
+
+  @Test
+  public void testPartStreamStopsAtDelimiter() throws Exception {
+    MultipartReader reader = new MultipartReader(byteByByte(FORM), "AaB03x", 1024);
+    assertEquals("form-data; name=\"submit-name\"", reader.nextPart().get("Content-Disposition"));
+    assertEquals("Larry", new String(reader.getPartStream().readAllBytes(), ISO_8859_1));
+    assertEquals("text/plain", reader.nextPart().get("Content-Type"));
+    assertNull(reader.nextPart());
+  }
+
+  @Test
+  public void testGetParameter() throws Exception {
+    assertEquals("AaB03x", MultipartReader.getBoundary("multipart/form-data; boundary=AaB03x"));
+    assertEquals("a;b", MultipartReader.getBoundary("multipart/form-data; charset=utf-8; boundary=\"a;b\""));
+    assertEquals("my \"file\".txt", MultipartReader.getParameter("form-data; name=\"f\"; filename=\"my \\\"file\\\".txt\"", "filename"));
+    assertNull(MultipartReader.getBoundary("multipart/form-data"));
+  }
+}
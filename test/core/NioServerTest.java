@@ -0,0 +1,12 @@
+package core;
+
+public class NioServerTest extends ServerTest {
+
+  @Override
+  Configuration getConfiguration() {
+    Configuration configuration = super.getConfiguration();
+    configuration.setEngine(Engine.NIO);
+    configuration.setNumberOfEventLoops(2);
+    return configuration;
+  }
+}
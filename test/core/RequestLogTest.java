@@ -0,0 +1,105 @@
+package core;
+
+import log.AccessLog;
+import log.LogFormat;
+import log.OverflowPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static core.HttpStatusCode.OK;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestLogTest {
+  Path accessLogPath;
+  Path slowLogPath;
+  Request request;
+  Response response;
+  InetAddress address;
+
+  @Before
+  public void setUp() throws Exception {
+    accessLogPath = Files.createTempFile("access", ".log");
+    slowLogPath = Files.createTempFile("slow", ".log");
+    address = InetAddress.getByName("127.0.0.1");
+
+    request = new Request();
+    request.requestMethod = "GET";
+    request.requestURI = new URI("http://localhost/users/42?page=2");
+    request.httpVersion = "HTTP/1.1";
+    request.route = "/users/{id}";
+    request.acceptTime = 1_000_000;
+    request.firstByteTime = 3_000_000;
+    request.headersReadTime = 3_250_000;
+    request.bodyReadTime = 3_250_000;
+    request.parsedTime = 3_500_000;
+    request.handlerStartTime = 3_600_000;
+    request.handlerEndTime = 1_203_600_000;
+    request.writtenTime = 1_204_000_000;
+    response = new Response(request);
+    response.responseStatusCode = OK;
+    response.setBody("<h1>Example</h1>");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(accessLogPath);
+    Files.deleteIfExists(slowLogPath);
+  }
+
+  @Test
+  public void testSlowRequestShowsPhasesRelativeToFirstByte() throws Exception {
+    String line = RequestLog.formatSlowRequest(request, response, address);
+
+    assertTrue(line, line.endsWith(" 127.0.0.1 \"GET /users/42?page=2 HTTP/1.1\" 200 route=/users/{id} total=1201.000ms" +
+      " accept=-2.000 first_byte=0.000 headers=0.250 body=0.250 parsed=0.500 handler_start=0.600" +
+      " handler_end=1200.600 written=1201.000"));
+  }
+
+  @Test
+  public void testMissingPhasesAreShownAsDash() throws Exception {
+    Request failed = new Request();
+    failed.firstByteTime = 3_000_000;
+    failed.writtenTime = 4_000_000;
+    Response response = new Response(failed);
+    response.generateStandardResponse(HttpStatusCode.BAD_REQUEST);
+
+    String line = RequestLog.formatSlowRequest(failed, response, null);
+    assertTrue(line, line.endsWith(" - \"-\" 400 route=- total=1.000ms accept=- first_byte=0.000 headers=- body=-" +
+      " parsed=- handler_start=- handler_end=- written=1.000"));
+  }
+
+  @Test
+  public void testOnlyRequestsOverThresholdAreWrittenToSlowLog() throws Exception {
+    RequestLog log = new RequestLog(open(accessLogPath), open(slowLogPath), 1_000_000_000L);
+    Request fast = new Request();
+    fast.requestMethod = "GET";
+    fast.requestURI = new URI("http://localhost/fast");
+    fast.httpVersion = "HTTP/1.1";
+    fast.firstByteTime = 3_000_000;
+    fast.writtenTime = 4_000_000;
+
+    log.record(request, response, address);
+    log.record(fast, response, address);
+    log.close();
+
+    List<String> accessLog = Files.readAllLines(accessLogPath, UTF_8);
+    assertEquals(2, accessLog.size());
+    assertTrue(accessLog.get(0), accessLog.get(0).contains("\"GET /users/42?page=2 HTTP/1.1\" 200 16 "));
+    List<String> slowLog = Files.readAllLines(slowLogPath, UTF_8);
+    assertEquals(1, slowLog.size());
+    assertTrue(slowLog.get(0), slowLog.get(0).contains("\"GET /users/42?page=2 HTTP/1.1\" 200 route=/users/{id} total=1201.000ms"));
+  }
+
+  private static AccessLog open(Path path) throws Exception {
+    return new AccessLog(path, LogFormat.COMBINED, 16, OverflowPolicy.BLOCK, 0, 0);
+  }
+}
@@ -6,11 +6,11 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 
-import static core.HttpMessageReader.readExactNumberOfBytes;
-import static core.HttpMessageReader.readStartLineAndHeaders;
 import static core.HttpStatusCode.*;
 import static core.RequestParser.buildAbsoluteURI;
 import static java.nio.charset.StandardCharsets.ISO_8859_1;
@@ -26,8 +26,12 @@ public class RequestParserTest {
     requestParser = new RequestParser(configuration);
   }
 
-  private ByteArrayInputStream in(String httpPacket) {
-    return new ByteArrayInputStream(httpPacket.getBytes(ISO_8859_1));
+  private HttpMessageReader in(String httpPacket) {
+    return reader(httpPacket.getBytes(ISO_8859_1));
+  }
+
+  private HttpMessageReader reader(byte[] httpPacket) {
+    return new HttpMessageReader(new ByteArrayInputStream(httpPacket), configuration.getMaximumHeadersSize());
   }
 
   private void assertHttpError(String httpPacket, HttpStatusCode error) {
@@ -53,36 +57,97 @@ public class RequestParserTest {
 
   @Test
   public void testReadStartLine_RFC2616_4_1() throws Exception {
-    assertEquals("request line", readStartLineAndHeaders(in("request line\r\n\r\nbody")));
+    assertEquals("request line", in("request line\r\n\r\nbody").readStartLineAndHeaders());
   }
 
   @Test
   public void testReadStartLineAndHeaders_RFC2616_4_1() throws Exception {
-    assertEquals("request line\r\nheader", readStartLineAndHeaders(in("request line\r\nheader\r\n\r\nbody")));
+    assertEquals("request line\r\nheader", in("request line\r\nheader\r\n\r\nbody").readStartLineAndHeaders());
   }
 
   @Test
   public void testReadStartLineAndBody_RFC2616_4_1() throws Exception {
-    InputStream in = in("request line\r\n\r\nbody");
-    assertEquals("request line", readStartLineAndHeaders(in));
-    assertEquals("body", readExactNumberOfBytes(in, 4, StandardCharsets.ISO_8859_1));
+    HttpMessageReader in = in("request line\r\n\r\nbody");
+    assertEquals("request line", in.readStartLineAndHeaders());
+    assertEquals("body", in.readExactNumberOfBytes(4, StandardCharsets.ISO_8859_1));
   }
 
   @Test
   public void testReadStartLineAndHeadersAndBody_RFC2616_4_1() throws Exception {
-    InputStream in = in("request line\r\nheader 1\r\nheader 2\r\n\r\nbody\r\n\r\nbody");
-    assertEquals("request line\r\nheader 1\r\nheader 2", readStartLineAndHeaders(in));
-    assertEquals("body\r\n\r\nbody", readExactNumberOfBytes(in, 12, StandardCharsets.ISO_8859_1));
+    HttpMessageReader in = in("request line\r\nheader 1\r\nheader 2\r\n\r\nbody\r\n\r\nbody");
+    assertEquals("request line\r\nheader 1\r\nheader 2", in.readStartLineAndHeaders());
+    assertEquals("body\r\n\r\nbody", in.readExactNumberOfBytes(12, StandardCharsets.ISO_8859_1));
   }
 
   @Test
   public void testSkipNewLinesBeforeStartLine_RFC2616_4_1() throws Exception {
-    assertEquals("abc\r\ndef", readStartLineAndHeaders(in("\r\n\r\nabc\r\ndef\r\n\r\n")));
+    assertEquals("abc\r\ndef", in("\r\n\r\nabc\r\ndef\r\n\r\n").readStartLineAndHeaders());
   }
 
   @Test
   public void testReadNonAsciiHeaders() throws Exception {
-    assertEquals("abc\u00FF", readStartLineAndHeaders(in("abc\u00FF\r\n\r\n")));
+    assertEquals("abc\u00FF", in("abc\u00FF\r\n\r\n").readStartLineAndHeaders());
+  }
+
+  @Test
+  public void testReadHeadersSplitAcrossSeveralReads() throws Exception {
+    InputStream in = new ByteArrayInputStream("\r\nrequest line\r\nheader\r\n\r\nbody".getBytes(ISO_8859_1)) {
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        return super.read(b, off, Math.min(len, 3));
+      }
+    };
+    HttpMessageReader reader = new HttpMessageReader(in, configuration.getMaximumHeadersSize());
+    assertEquals("request line\r\nheader", reader.readStartLineAndHeaders());
+    assertEquals("body", reader.readExactNumberOfBytes(4, ISO_8859_1));
+  }
+
+  @Test
+  public void testReadHeadersLargerThanInitialBuffer() throws Exception {
+    String cookie = "Cookie: " + new String(new char[10000]).replace('\0', 'a');
+    assertEquals("request line\r\n" + cookie, in("request line\r\n" + cookie + "\r\n\r\n").readStartLineAndHeaders());
+  }
+
+  @Test
+  public void testKeepPipelinedRequestInBuffer() throws Exception {
+    HttpMessageReader in = in("first\r\nheader\r\n\r\nsecond\r\n\r\n");
+    assertEquals("first\r\nheader", in.readStartLineAndHeaders());
+    assertEquals("second", in.readStartLineAndHeaders());
+  }
+
+  @Test
+  public void testTooLargeHeaders() throws Exception {
+    configuration.setMaximumHeadersSize(10);
+    try {
+      in("request line\r\nheader\r\n\r\n").readStartLineAndHeaders();
+      fail();
+    } catch (HttpError e) {
+      assertEquals(REQUEST_HEADER_FIELDS_TOO_LARGE, e.getErrorCode());
+    }
+  }
+
+  @Test
+  public void testTooManyHeaders_RFC6585_5() throws Exception {
+    configuration.setMaximumNumberOfHeaders(2);
+    parse("GET / HTTP/1.1\r\nHost: localhost\r\nAccept: */*\r\n\r\n");
+    requestParser = new RequestParser(configuration);
+    assertHttpError("GET / HTTP/1.1\r\nHost: localhost\r\nAccept: */*\r\nCookie: a=b\r\n\r\n", REQUEST_HEADER_FIELDS_TOO_LARGE);
+  }
+
+  @Test
+  public void testTooLongHeader_RFC6585_5() throws Exception {
+    configuration.setMaximumHeaderLength(16);
+    parse("GET / HTTP/1.1\r\nHost: localhost\r\nCookie: abcdefgh\r\n\r\n");
+    requestParser = new RequestParser(configuration);
+    assertHttpError("GET / HTTP/1.1\r\nHost: localhost\r\nCookie: abcdefghi\r\n\r\n", REQUEST_HEADER_FIELDS_TOO_LARGE);
+  }
+
+  @Test
+  public void testTooLargeContentLength_RFC7231_6_5_11() throws Exception {
+    configuration.setMaximumBodySize(4);
+    parse("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nbody");
+    requestParser = new RequestParser(configuration);
+    assertHttpError("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 99999999999\r\n\r\nbody", REQUEST_ENTITY_TOO_LARGE);
   }
 
   @Test
@@ -217,8 +282,117 @@ public class RequestParserTest {
   }
 
   @Test
-  public void testTransferEncodingHeaderNotImplemented() throws Exception {
-    assertHttpError("GET / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n", NOT_IMPLEMENTED);
+  public void testTransferCodingNotImplemented_RFC7230_3_3_1() throws Exception {
+    assertHttpError("POST / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: gzip, chunked\r\n\r\n", NOT_IMPLEMENTED);
+  }
+
+  @Test
+  public void testChunkedMustBeFinalTransferCoding_RFC7230_3_3_3() throws Exception {
+    assertHttpError("POST / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked, chunked\r\n\r\n", BAD_REQUEST);
+  }
+
+  @Test
+  public void testTransferEncodingWithContentLengthIsRejected_RFC7230_3_3_3() throws Exception {
+    assertHttpError("POST / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\nContent-Length: 4\r\n\r\n0\r\n\r\n", BAD_REQUEST);
+  }
+
+  @Test
+  public void testChunkedBodyIsDecoded_RFC7230_4_1() throws Exception {
+    HttpMessageReader reader = in("POST / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n" +
+      "4\r\nWiki\r\n5;name=value\r\npedia\r\nE\r\n in\r\n\r\nchunks.\r\n0\r\nExpires: never\r\n\r\n" +
+      "GET / HTTP/1.1\r\n\r\n");
+    requestParser.parse(reader);
+    Request request = requestParser.request;
+
+    assertEquals("Wikipedia in\r\n\r\nchunks.", request.getBody());
+    assertEquals("never", request.getTrailers().get("Expires"));
+    assertEquals("GET / HTTP/1.1", reader.readStartLineAndHeaders());
+  }
+
+  @Test
+  public void testChunkedBodyLengthIsKnownOnceRead() throws Exception {
+    Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n4\r\nWiki\r\n5\r\npedia\r\n0\r\n\r\n");
+    assertEquals(0, request.calculateContentLength());
+
+    request.getBodyStream().readAllBytes();
+    assertEquals(9, request.calculateContentLength());
+  }
+
+  @Test
+  public void testChunkedFormIsParsed() throws Exception {
+    Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n" +
+      "Content-Type: application/x-www-form-urlencoded\r\n\r\n3\r\na=1\r\n4\r\n&b=2\r\n0\r\n\r\n");
+    assertEquals("1", request.parameters.get("a").get(0));
+    assertEquals("2", request.parameters.get("b").get(0));
+  }
+
+  @Test
+  public void testMalformedChunkIsBadRequest_RFC7230_4_1() throws Exception {
+    for (String body : new String[] {"x\r\n", "4\r\nWikipedia\r\n0\r\n\r\n", "4\r\nWi", "1000000000000000\r\n"}) {
+      requestParser = new RequestParser(configuration);
+      Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n" + body);
+      try {
+        request.getBody();
+        fail(body);
+      } catch (HttpError e) {
+        assertEquals(BAD_REQUEST, e.getErrorCode());
+      }
+    }
+  }
+
+  @Test
+  public void testChunkedBodyLimit() throws Exception {
+    configuration.setMaximumBodySize(8);
+    Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nhello\r\n5\r\nworld\r\n0\r\n\r\n");
+    try {
+      request.getBody();
+      fail();
+    } catch (HttpError e) {
+      assertEquals(REQUEST_ENTITY_TOO_LARGE, e.getErrorCode());
+    }
+  }
+
+  @Test
+  public void testBufferedChunkedBodyIsDetected() throws Exception {
+    HttpMessageReader reader = new HttpMessageReader(null, configuration.getMaximumHeadersSize());
+    String body = "4\r\nWiki\r\n0\r\nExpires: never\r\n\r\n";
+    for (int i = 0; i < body.length(); i++) {
+      assertFalse(reader.hasBufferedChunkedBody());
+      reader.readFrom(java.nio.channels.Channels.newChannel(new ByteArrayInputStream(body.substring(i, i + 1).getBytes(ISO_8859_1))));
+    }
+    assertTrue(reader.hasBufferedChunkedBody());
+  }
+
+  @Test
+  public void testBufferedHeadersAreDetectedAsTheyArrive() throws Exception {
+    HttpMessageReader reader = new HttpMessageReader(null, configuration.getMaximumHeadersSize());
+    String requests = "\r\nGET / HTTP/1.1\r\nHost: a\r\n\r\nGET / HTTP/1.1\r\nHost: b\r\n\r\n";
+    int first = requests.indexOf("\r\n\r\n") + 4;
+    for (int i = 0; i < requests.length(); i++) {
+      if (i == first) {
+        assertTrue(reader.hasBufferedHeaders());
+        assertEquals("GET / HTTP/1.1\r\nHost: a", reader.readStartLineAndHeaders());
+      }
+      assertFalse(reader.hasBufferedHeaders());
+      reader.readFrom(Channels.newChannel(new ByteArrayInputStream(requests.substring(i, i + 1).getBytes(ISO_8859_1))));
+    }
+    assertTrue(reader.hasBufferedHeaders());
+    assertEquals("GET / HTTP/1.1\r\nHost: b", reader.readStartLineAndHeaders());
+  }
+
+  @Test
+  public void testBufferShrinksOnceLargeHeadersAreConsumed() throws Exception {
+    String large = "GET / HTTP/1.1\r\nCookie: " + new String(new char[6000]).replace('\0', 'a') + "\r\n\r\n";
+    HttpMessageReader reader = new HttpMessageReader(null, configuration.getMaximumHeadersSize());
+    ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream((large + "GET / HTTP/1.1\r\n\r\n").getBytes(ISO_8859_1)));
+    while (!reader.hasBufferedHeaders())
+      reader.readFrom(channel);
+    reader.readStartLineAndHeaders();
+    reader.readStartLineAndHeaders();
+    assertTrue(reader.bufferSize() > 4096);
+
+    reader.readFrom(Channels.newChannel(new ByteArrayInputStream("GET".getBytes(ISO_8859_1))));
+    assertEquals(4096, reader.bufferSize());
   }
 
   @Test
@@ -273,13 +447,13 @@ public class RequestParserTest {
   @Test
   public void testSkipBodyIfThereIsNoContentLengthHeader_RFC2616_4_4() throws Exception {
     Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\n\r\nbody here");
-    assertEquals(null, request.body);
+    assertEquals(null, request.getBody());
   }
 
   @Test
   public void testSkipBodyIfContentLengthIsZero_RFC2616_4_4() throws Exception {
     Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 0\r\n\r\nbody here");
-    assertEquals("", request.body);
+    assertEquals("", request.getBody());
   }
 
   @Test
@@ -289,25 +463,83 @@ public class RequestParserTest {
 
   @Test
   public void testBodyLengthIsSmallerThanContentLength_RFC2616_4_4() throws Exception {
-    assertHttpError("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 99\r\n\r\nbody here", BAD_REQUEST);
+    Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 99\r\n\r\nbody here");
+    try {
+      request.getBody();
+      fail();
+    } catch (HttpError e) {
+      assertEquals(BAD_REQUEST, e.getErrorCode());
+    }
+  }
+
+  @Test
+  public void testBodyIsReadLazily() throws Exception {
+    configuration.setMaximumBodySize(Long.MAX_VALUE);
+    InputStream in = new ByteArrayInputStream("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5000000000\r\n\r\nbody".getBytes(ISO_8859_1));
+    requestParser.parse(new HttpMessageReader(in, configuration.getMaximumHeadersSize()));
+    Request request = requestParser.request;
+
+    assertEquals(5000000000L, request.calculateContentLength());
+    byte[] start = new byte[4];
+    assertEquals(4, request.getBodyStream().read(start));
+    assertEquals("body", new String(start, ISO_8859_1));
+  }
+
+  @Test
+  public void testBodyStreamStopsAtContentLength_RFC7230_3_3_3() throws Exception {
+    HttpMessageReader reader = in("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nbodyGET / HTTP/1.1\r\n\r\n");
+    requestParser.parse(reader);
+
+    InputStream body = requestParser.request.getBodyStream();
+    byte[] content = new byte[100];
+    assertEquals(4, body.read(content));
+    assertEquals(-1, body.read(content));
+    assertEquals("GET / HTTP/1.1", reader.readStartLineAndHeaders());
+  }
+
+  @Test
+  public void testPhaseTimestampsAreRecorded() throws Exception {
+    HttpMessageReader reader = in("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nbody");
+    requestParser.parse(reader);
+    Request request = requestParser.request;
+
+    assertEquals(reader.getDataTime(), request.firstByteTime);
+    assertTrue(request.firstByteTime != 0);
+    assertTrue(request.headersReadTime - request.firstByteTime >= 0);
+    assertEquals(0, request.bodyStream.finishedTime);
+
+    request.getBodyStream().read(new byte[2]);
+    assertEquals(0, request.bodyStream.finishedTime);
+    request.getBodyStream().read(new byte[2]);
+    assertTrue(request.bodyStream.finishedTime - request.headersReadTime >= 0);
+  }
+
+  @Test
+  public void testBodyCanNotBeDecodedAfterStreamWasRead() throws Exception {
+    Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nbody");
+    request.getBodyStream().read();
+    try {
+      request.getBody();
+      fail();
+    } catch (IllegalStateException ignored) {}
   }
 
   @Test
   public void testBodyIsCutToContentLength_RFC2616_4_4() throws Exception {
     Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nlong long body");
-    assertEquals("long", request.body);
+    assertEquals("long", request.getBody());
   }
 
   @Test
   public void testBody() throws Exception {
     Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 9\r\n\r\nbody here");
-    assertEquals("body here", request.body);
+    assertEquals("body here", request.getBody());
   }
 
   @Test
   public void testBodyIsNotTrimmedAndNoLWSAreReplaced() throws Exception {
     Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 19\r\n\r\n\r\nbody \r\n \there\r\n\t ");
-    assertEquals("\r\nbody \r\n \there\r\n\t ", request.body);
+    assertEquals("\r\nbody \r\n \there\r\n\t ", request.getBody());
   }
 
   @Test
@@ -316,20 +548,20 @@ public class RequestParserTest {
       "Host: www.google.com\r\n" +
       "Content-Type: text/html; charset=UTF-16\r\n" +
       "Content-length: 12\r\n\r\n";
-    InputStream in = new ByteArrayInputStream(mergeByteArrays(
+    HttpMessageReader in = reader(mergeByteArrays(
       requestString.getBytes(StandardCharsets.ISO_8859_1),
       "body\uFFFF".getBytes(StandardCharsets.UTF_16)
     ));
 
     requestParser.parse(in);
     Request request = requestParser.request;
-    assertEquals("body\uFFFF", request.body);
+    assertEquals("body\uFFFF", request.getBody());
   }
 
   @Test
   public void testUrlencodedBodyIsParsed_HTML401_specification_17_13_4() throws Exception {
     Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 20\r\nContent-Type: application/x-www-form-urlencoded\r\n\r\na=1&a=&bc=12+%26%203");
-    assertEquals("a=1&a=&bc=12+%26%203", request.body);
+    assertEquals(-1, request.getBodyStream().read());
 
     assertEquals(new LinkedList<String>() {{
       add("1");
@@ -340,6 +572,13 @@ public class RequestParserTest {
     }}, request.parameters.get("bc"));
   }
 
+  @Test
+  public void testOversizedFormParameter() throws Exception {
+    configuration.setMaximumFormParameterSize(16);
+    String body = "a=1&b=" + new String(new char[20000]).replace('\0', 'x');
+    assertHttpError("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length() +
+      "\r\nContent-Type: application/x-www-form-urlencoded\r\n\r\n" + body, REQUEST_ENTITY_TOO_LARGE);
+  }
 
   @Test
   public void testParseEmptyBody() throws Exception {
@@ -348,14 +587,23 @@ public class RequestParserTest {
   }
 
   @Test
-  public void testMultipartBodyNotImplemented_HTML401_specification_17_13_4() throws Exception {
-    assertHttpError("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\nContent-Type: multipart/form-data\r\n\r\nbody", NOT_IMPLEMENTED);
+  public void testMultipartBodyIsParsed_RFC7578_4() throws Exception {
+    String body = "--xyz\r\nContent-Disposition: form-data; name=\"a\"\r\n\r\n1\r\n--xyz--";
+    Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length() +
+      "\r\nContent-Type: multipart/form-data; boundary=xyz\r\n\r\n" + body);
+    assertEquals("1", request.parameters.get("a").get(0));
+    assertEquals(1, request.parts.size());
+  }
+
+  @Test
+  public void testMultipartBodyWithoutBoundary_RFC7578_4_1() throws Exception {
+    assertHttpError("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\nContent-Type: multipart/form-data\r\n\r\nbody", BAD_REQUEST);
   }
 
   @Test
   public void testBodyWithOtherContentTypeIsNotParsed() throws Exception {
     Request request = parse("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 20\r\nContent-Type: test\r\n\r\na=1&a=&bc=12+%26%203");
-    assertEquals("a=1&a=&bc=12+%26%203", request.body);
+    assertEquals("a=1&a=&bc=12+%26%203", request.getBody());
     assertTrue(request.parameters.isEmpty());
   }
 
@@ -376,7 +624,7 @@ public class RequestParserTest {
     assertEquals("GET", request.requestMethod);
     assertEquals("http://localhost/?a=1#abc", request.requestURI.toString());
     assertEquals("HTTP/1.1", request.httpVersion);
-    assertEquals("body", request.body);
+    assertEquals("body", request.getBody());
     assertEquals("1", request.parameters.get("a").get(0));
     assertEquals(null, request.responseStatusCode);
   }
@@ -387,7 +635,7 @@ public class RequestParserTest {
     assertEquals("GET", request.requestMethod);
     assertEquals("/?a=1#abc", request.requestURI.toString());
     assertEquals("HTTP/0.9", request.httpVersion);
-    assertEquals(null, request.body);
+    assertEquals(null, request.getBody());
     assertEquals(null, request.parameters.get("a"));
     assertEquals(HTTP_VERSION_NOT_SUPPORTED, request.responseStatusCode);
   }
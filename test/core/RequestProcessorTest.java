@@ -1,11 +1,20 @@
 package core;
 
+import metrics.MetricRegistry;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.*;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -13,6 +22,7 @@ import static core.HttpStatusCode.NOT_FOUND;
 import static core.HttpStatusCode.OK;
 import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class RequestProcessorTest {
@@ -40,13 +50,16 @@ public class RequestProcessorTest {
     OutputStream out = new ByteArrayOutputStream();
     System.setOut(new PrintStream(out));
 
+    ServerMetrics metrics = new ServerMetrics(new MetricRegistry());
+    processor = spy(new RequestProcessor(clientSocket, configuration, new Router(handlers), metrics));
     when(clientSocket.getOutputStream()).thenReturn(mock(OutputStream.class));
     when(clientSocket.getInputStream()).thenReturn(mock(InputStream.class));
     doThrow(new RuntimeException("test")).
       when(processor).process(any(OutputStream.class), any(InputStream.class));
 
     processor.run();
-    assertEquals("Exception caught:\ntest\n", out.toString());
+    assertEquals("", out.toString());
+    assertTrue(metrics.getRegistry().toPrometheusFormat().contains("httpserver_connection_errors_total 1\n"));
 
     System.setOut(savedOut);
   }
@@ -93,6 +106,316 @@ public class RequestProcessorTest {
     assertEquals("foobar", out.toString().split("\r\n\r\n")[1]);
   }
 
+  @Test
+  public void testKeepAliveServesSeveralRequestsOnOneConnection() throws Exception {
+    handlers.put(Pattern.compile(".*"), new HandlerOK());
+
+    OutputStream out = new ByteArrayOutputStream();
+    InputStream in = new ByteArrayInputStream(("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+      "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(ISO_8859_1));
+    processor.process(out, in);
+
+    assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\nfoo" +
+      "HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\nfoo", out.toString());
+  }
+
+  @Test
+  public void testPipelinedResponsesAreWrittenInOrderWithOneWrite_RFC2616_8_1_2_2() throws Exception {
+    handlers.put(Pattern.compile(".*"), new HandlerOK());
+
+    ByteArrayOutputStream out = spy(new ByteArrayOutputStream());
+    RecordingChannel channel = new RecordingChannel();
+    InputStream in = new ByteArrayInputStream(("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+      "HEAD / HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+      "POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nbody" +
+      "GET /last HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(ISO_8859_1));
+    processor.process(out, in, channel);
+
+    assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\nfoo" +
+      "HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\n" +
+      "HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\nfoo" +
+      "HTTP/1.1 200 OK\r\nContent-Length: 3\r\nConnection: close\r\n\r\nfoo", channel.content.toString("ISO-8859-1"));
+    assertEquals(1, channel.gatheringWrites);
+    verifyZeroInteractions(out);
+  }
+
+  @Test
+  public void testLargeBodyIsWrittenWithoutCopyingIntoBatch() throws Exception {
+    byte[] body = new byte[100000];
+    body[0] = 1;
+    body[body.length - 1] = 2;
+    handlers.put(Pattern.compile(".*"), new Handler() {
+      @Override
+      public void handle(Request request, Response response) {
+        response.responseStatusCode = OK;
+        response.setBody(body);
+      }
+    });
+
+    RecordingChannel channel = new RecordingChannel();
+    processor.process(new ByteArrayOutputStream(), new ByteArrayInputStream("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(ISO_8859_1)), channel);
+
+    assertEquals(1, channel.gatheringWrites);
+    assertTrue(channel.arrays.contains(body));
+    byte[] written = channel.content.toByteArray();
+    assertEquals(1, written[written.length - body.length]);
+    assertEquals(2, written[written.length - 1]);
+  }
+
+  @Test
+  public void testNotModifiedResponseKeepsConnectionAlive() throws Exception {
+    handlers.put(Pattern.compile(".*"), new Handler() {
+      @Override
+      public void handle(Request request, Response response) {
+        response.responseStatusCode = HttpStatusCode.NOT_MODIFIED;
+      }
+    });
+
+    Request request = new Request();
+    request.requestMethod = "GET";
+    request.httpVersion = "HTTP/1.1";
+    request.requestURI = new URI("/");
+    Response response = processor.respond(request, 1);
+
+    assertEquals(HttpStatusCode.NOT_MODIFIED, response.responseStatusCode);
+    assertEquals(null, response.getHeader("Connection"));
+  }
+
+  @Test
+  public void testCloseConnectionWhenRequested_RFC2616_8_1_2_1() throws Exception {
+    handlers.put(Pattern.compile(".*"), new HandlerOK());
+
+    OutputStream out = new ByteArrayOutputStream();
+    InputStream in = new ByteArrayInputStream(("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n" +
+      "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(ISO_8859_1));
+    processor.process(out, in);
+
+    assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 3\r\nConnection: close\r\n\r\nfoo", out.toString());
+  }
+
+  @Test
+  public void testHttp10ConnectionIsNotPersistentByDefault_RFC2616_19_6_2() throws Exception {
+    handlers.put(Pattern.compile(".*"), new HandlerOK());
+
+    OutputStream out = new ByteArrayOutputStream();
+    InputStream in = new ByteArrayInputStream(("GET / HTTP/1.0\r\nHost: localhost\r\n\r\n" +
+      "GET / HTTP/1.0\r\nHost: localhost\r\n\r\n").getBytes(ISO_8859_1));
+    processor.process(out, in);
+
+    assertEquals("HTTP/1.0 200 OK\r\nContent-Length: 3\r\nConnection: close\r\n\r\nfoo", out.toString());
+  }
+
+  @Test
+  public void testHttp10KeepAlive_RFC2616_19_6_2() throws Exception {
+    handlers.put(Pattern.compile(".*"), new HandlerOK());
+
+    OutputStream out = new ByteArrayOutputStream();
+    InputStream in = new ByteArrayInputStream(("GET / HTTP/1.0\r\nHost: localhost\r\nConnection: Keep-Alive\r\n\r\n" +
+      "GET / HTTP/1.0\r\nHost: localhost\r\n\r\n").getBytes(ISO_8859_1));
+    processor.process(out, in);
+
+    assertEquals("HTTP/1.0 200 OK\r\nContent-Length: 3\r\nConnection: keep-alive\r\n\r\nfoo" +
+      "HTTP/1.0 200 OK\r\nContent-Length: 3\r\nConnection: close\r\n\r\nfoo", out.toString());
+  }
+
+  @Test
+  public void testMaximumRequestsPerConnection() throws Exception {
+    configuration.setMaximumRequestsPerConnection(2);
+    handlers.put(Pattern.compile(".*"), new HandlerOK());
+
+    OutputStream out = new ByteArrayOutputStream();
+    String request = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+    processor.process(out, new ByteArrayInputStream((request + request + request).getBytes(ISO_8859_1)));
+
+    assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\nfoo" +
+      "HTTP/1.1 200 OK\r\nContent-Length: 3\r\nConnection: close\r\n\r\nfoo", out.toString());
+  }
+
+  @Test
+  public void testCloseConnectionWithoutContentLength() throws Exception {
+    handlers.put(Pattern.compile(".*"), new Handler() {
+      @Override
+      protected void handle(Request request, Response response) {
+        response.responseStatusCode = OK;
+      }
+    });
+
+    OutputStream out = new ByteArrayOutputStream();
+    String request = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+    processor.process(out, new ByteArrayInputStream((request + request).getBytes(ISO_8859_1)));
+
+    assertEquals("HTTP/1.1 200 OK\r\nConnection: close\r\n\r\n", out.toString());
+  }
+
+  @Test
+  public void testCloseConnectionAfterIdleTimeOut() throws Exception {
+    configuration.setKeepAliveTimeOut(100);
+    handlers.put(Pattern.compile(".*"), new HandlerOK());
+
+    OutputStream out = new ByteArrayOutputStream();
+    InputStream request = new ByteArrayInputStream("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(ISO_8859_1));
+    InputStream in = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (request.available() == 0)
+          throw new SocketTimeoutException();
+        return request.read(b, off, len);
+      }
+    };
+    processor.process(out, in);
+
+    assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\nfoo", out.toString());
+    verify(clientSocket).setSoTimeout(100);
+  }
+
+  @Test
+  public void testUnreadBodyIsDiscardedBeforeNextRequest() throws Exception {
+    handlers.put(Pattern.compile(".*"), new HandlerOK());
+
+    OutputStream out = new ByteArrayOutputStream();
+    String request = "POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nbody" +
+      "GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+    processor.process(out, new ByteArrayInputStream(request.getBytes(ISO_8859_1)));
+
+    assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\nfoo" +
+      "HTTP/1.1 200 OK\r\nContent-Length: 3\r\nConnection: close\r\n\r\nfoo", out.toString());
+  }
+
+  @Test
+  public void testCloseConnectionWhenUnreadBodyIsTooLarge() throws Exception {
+    handlers.put(Pattern.compile(".*"), new HandlerOK());
+
+    OutputStream out = new ByteArrayOutputStream();
+    String request = "POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 1000000\r\n\r\nbody";
+    processor.process(out, new ByteArrayInputStream(request.getBytes(ISO_8859_1)));
+
+    assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 3\r\nConnection: close\r\n\r\nfoo", out.toString());
+  }
+
+  @Test
+  public void testTruncatedBodyIsBadRequest() throws Exception {
+    handlers.put(Pattern.compile(".*"), new Handler() {
+      @Override
+      public void handle(Request request, Response response) {
+        response.responseStatusCode = OK;
+        response.setBody(request.getBody());
+      }
+    });
+
+    OutputStream out = new ByteArrayOutputStream();
+    String request = "POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 10\r\n\r\nbody";
+    processor.process(out, new ByteArrayInputStream(request.getBytes(ISO_8859_1)));
+
+    assertEquals("HTTP/1.1 400 Bad Request", out.toString().split("\r\n")[0]);
+  }
+
+  @Test
+  public void testStreamedBodyIsWrittenInChunks_RFC7230_4_1() throws Exception {
+    handlers.put(Pattern.compile(".*"), new Handler() {
+      @Override
+      public void handle(Request request, Response response) {
+        response.responseStatusCode = OK;
+        response.setBody(body -> {
+          body.write("Wiki".getBytes(ISO_8859_1));
+          body.flush();
+          body.write("pedia".getBytes(ISO_8859_1));
+        });
+      }
+    });
+
+    OutputStream out = new ByteArrayOutputStream();
+    String request = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+    processor.process(out, new ByteArrayInputStream((request + request).getBytes(ISO_8859_1)));
+
+    String response = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n4\r\nWiki\r\n5\r\npedia\r\n0\r\n\r\n";
+    assertEquals(response + response, out.toString());
+  }
+
+  @Test
+  public void testUnreadChunkedBodyIsDiscardedBeforeNextRequest() throws Exception {
+    handlers.put(Pattern.compile(".*"), new HandlerOK());
+
+    OutputStream out = new ByteArrayOutputStream();
+    String request = "POST / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n4\r\nbody\r\n0\r\n\r\n" +
+      "GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+    processor.process(out, new ByteArrayInputStream(request.getBytes(ISO_8859_1)));
+
+    assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\nfoo" +
+      "HTTP/1.1 200 OK\r\nContent-Length: 3\r\nConnection: close\r\n\r\nfoo", out.toString());
+  }
+
+  @Test
+  public void testMovedPartIsKeptAfterResponse() throws Exception {
+    Path target = Files.createTempFile("moved", ".txt");
+    configuration.setPartMemoryThreshold(4);
+    handlers.put(Pattern.compile(".*"), new Handler() {
+      @Override
+      public void handle(Request request, Response response) {
+        try {
+          request.getPart("file").moveTo(target);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        response.responseStatusCode = OK;
+        response.setBody("foo");
+      }
+    });
+
+    String content = "--xyz\r\nContent-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\n\r\nuploaded content\r\n--xyz--";
+    String request = "POST / HTTP/1.1\r\nHost: localhost\r\nContent-Type: multipart/form-data; boundary=xyz\r\nContent-Length: " +
+      content.length() + "\r\nConnection: close\r\n\r\n" + content;
+    try {
+      processor.process(new ByteArrayOutputStream(), new ByteArrayInputStream(request.getBytes(ISO_8859_1)));
+
+      assertEquals("uploaded content", new String(Files.readAllBytes(target), ISO_8859_1));
+    } finally {
+      Files.deleteIfExists(target);
+    }
+  }
+
+  static class RecordingChannel implements GatheringByteChannel {
+    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+    final List<byte[]> arrays = new ArrayList<>();
+    int gatheringWrites;
+
+    @Override
+    public long write(ByteBuffer[] sources, int offset, int length) {
+      gatheringWrites++;
+      long written = 0;
+      for (int i = offset; i < offset + length; i++) {
+        arrays.add(sources[i].array());
+        written += write(sources[i]);
+      }
+      return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] sources) {
+      return write(sources, 0, sources.length);
+    }
+
+    @Override
+    public int write(ByteBuffer source) {
+      int written = source.remaining();
+      content.write(source.array(), source.arrayOffset() + source.position(), written);
+      source.position(source.limit());
+      return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+  }
+
   public static class HandlerOK extends Handler {
     @Override
     public void handle(Request request, Response response) {
@@ -0,0 +1,174 @@
+package core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static core.HttpStatusCode.NOT_FOUND;
+import static core.HttpStatusCode.OK;
+import static core.ResponseCompressor.negotiateEncoding;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResponseCompressorTest {
+  private static final String BODY = new String(new char[2000]).replace('\0', 'a');
+
+  private Configuration configuration;
+  private ResponseCompressor compressor;
+
+  @Before
+  public void setUp() throws Exception {
+    configuration = new Configuration();
+    compressor = new ResponseCompressor(configuration);
+  }
+
+  @Test
+  public void testNegotiateEncoding_RFC7231_5_3_4() throws Exception {
+    assertEquals("gzip", negotiateEncoding("gzip, deflate"));
+    assertEquals("deflate", negotiateEncoding("gzip;q=0.5, deflate"));
+    assertEquals("deflate", negotiateEncoding("deflate, gzip;q=0"));
+    assertEquals("gzip", negotiateEncoding("*"));
+    assertEquals("deflate", negotiateEncoding("*, gzip;q=0"));
+    assertNull(negotiateEncoding("identity"));
+    assertNull(negotiateEncoding("br, *;q=0"));
+    assertNull(negotiateEncoding(null));
+  }
+
+  @Test
+  public void testCompressWithGzip() throws Exception {
+    Response response = compress("text/html; charset=ISO-8859-1", BODY, "gzip, deflate");
+
+    assertEquals("gzip", response.getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", response.getHeader("Vary"));
+    assertEquals("W/\"tag\"", response.getHeader("ETag"));
+    assertEquals("" + response.calculateContentLength(), response.getHeader("Content-Length"));
+    assertEquals(BODY, decompress(new GZIPInputStream(new ByteArrayInputStream(response.getBody().getBytes(ISO_8859_1)))));
+  }
+
+  @Test
+  public void testCompressWithDeflate() throws Exception {
+    Response response = compress("application/json", BODY, "deflate");
+
+    assertEquals("deflate", response.getHeader("Content-Encoding"));
+    assertEquals(BODY, decompress(new InflaterInputStream(new ByteArrayInputStream(response.getBody().getBytes(ISO_8859_1)))));
+  }
+
+  @Test
+  public void testBodiesBelowMinimumSizeAreNotCompressed() throws Exception {
+    Response response = compress("text/html", "small", "gzip");
+
+    assertNull(response.getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", response.getHeader("Vary"));
+    assertEquals("small", response.getBody());
+  }
+
+  @Test
+  public void testOnlyAllowedContentTypesAreCompressed() throws Exception {
+    Response response = compress("image/png", BODY, "gzip");
+
+    assertNull(response.getHeader("Content-Encoding"));
+    assertNull(response.getHeader("Vary"));
+  }
+
+  @Test
+  public void testNothingIsCompressedWhenDisabled() throws Exception {
+    configuration.setCompressionEnabled(false);
+
+    assertNull(compress("text/html", BODY, "gzip").getHeader("Content-Encoding"));
+  }
+
+  @Test
+  public void testErrorResponsesAreNotCompressed() throws Exception {
+    Response response = new Response();
+    response.responseStatusCode = NOT_FOUND;
+    response.setHeader("Content-Type", "text/html");
+    response.setBody(BODY);
+
+    compressor.compress(request("gzip"), response);
+
+    assertNull(response.getHeader("Content-Encoding"));
+  }
+
+  @Test
+  public void testHeadResponseHasSameHeadersAsGet() throws Exception {
+    Response get = compress("GET", BODY);
+    Response head = compress("HEAD", BODY);
+
+    assertEquals("gzip", head.getHeader("Content-Encoding"));
+    assertEquals("Accept-Encoding", head.getHeader("Vary"));
+    assertEquals(get.getHeader("Content-Length"), head.getHeader("Content-Length"));
+    assertEquals(get.getHeader("ETag"), head.getHeader("ETag"));
+    assertNull(head.getBody());
+  }
+
+  @Test
+  public void testBodyWriterIsCompressedWhileStreaming() throws Exception {
+    Response response = new Response();
+    response.responseStatusCode = OK;
+    response.setHeader("Content-Type", "text/plain");
+    response.setBody(out -> out.write(BODY.getBytes(ISO_8859_1)));
+
+    compressor.compress(request("gzip"), response);
+
+    assertEquals("gzip", response.getHeader("Content-Encoding"));
+    assertEquals("chunked", response.getHeader("Transfer-Encoding"));
+    assertEquals(BODY, decompress(new GZIPInputStream(new ByteArrayInputStream(response.getBody().getBytes(ISO_8859_1)))));
+  }
+
+  @Test
+  public void testBodyWriterWithContentLengthIsNotCompressed() throws Exception {
+    Response response = new Response();
+    response.httpVersion = "HTTP/1.0";
+    response.responseStatusCode = OK;
+    response.setHeader("Content-Type", "text/plain");
+    response.setBody(out -> out.write(BODY.getBytes(ISO_8859_1)));
+    response.setHeader("Content-Length", "" + BODY.length());
+
+    compressor.compress(request("gzip"), response);
+
+    assertNull(response.getHeader("Content-Encoding"));
+    assertEquals(BODY, response.getBody());
+  }
+
+  private Response compress(String method, String body) throws Exception {
+    Request request = request("gzip");
+    request.requestMethod = method;
+    Response response = new Response(request);
+    response.responseStatusCode = OK;
+    response.setHeader("Content-Type", "text/html");
+    response.setHeader("ETag", "\"tag\"");
+    response.setBody(body);
+
+    compressor.compress(request, response);
+    return response;
+  }
+
+  private Response compress(String contentType, String body, String acceptEncoding) throws Exception {
+    Response response = new Response();
+    response.responseStatusCode = OK;
+    response.setHeader("Content-Type", contentType);
+    response.setHeader("ETag", "\"tag\"");
+    response.setBody(body);
+
+    compressor.compress(request(acceptEncoding), response);
+    return response;
+  }
+
+  private Request request(String acceptEncoding) {
+    Request request = new Request();
+    request.requestMethod = "GET";
+    request.setHeader("Accept-Encoding", acceptEncoding);
+    return request;
+  }
+
+  private String decompress(InputStream in) throws Exception {
+    try (InputStream stream = in) {
+      return new String(stream.readAllBytes(), ISO_8859_1);
+    }
+  }
+}
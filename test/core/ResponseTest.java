@@ -2,11 +2,40 @@ package core;
 
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import static core.HttpStatusCode.*;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.*;
 
 public class ResponseTest {
 
+  @Test
+  public void testStreamedBodyIsChunked_RFC7230_4_1() throws Exception {
+    Response response = new Response();
+    response.responseStatusCode = OK;
+    response.setBody("foo");
+    response.setBody(out -> out.write("Wikipedia".getBytes(ISO_8859_1)));
+
+    assertNull(response.getHeader("Content-Length"));
+    assertEquals("chunked", response.getHeader("Transfer-Encoding"));
+    assertEquals("Wikipedia", response.getBody());
+    assertEquals("9\r\nWikipedia\r\n0\r\n\r\n", new String(((ByteBuffer) response.openBody().get(0)).array(), ISO_8859_1));
+  }
+
+  @Test
+  public void testStreamedBodyIsNotChunkedForHttp10() throws Exception {
+    Response response = new Response();
+    response.httpVersion = "HTTP/1.0";
+    response.responseStatusCode = OK;
+    response.setBody(out -> out.write("foo".getBytes(ISO_8859_1)));
+
+    assertNull(response.getHeader("Transfer-Encoding"));
+    assertEquals("foo", new String(((ByteBuffer) response.openBody().get(0)).array(), ISO_8859_1));
+  }
+
   @Test
   public void testSetDefaultHttpVersionInCaseOfEmptyConstructor() throws Exception {
     Response response = new Response();
@@ -47,7 +76,7 @@ public class ResponseTest {
 
     Response response = new Response(request);
     assertEquals(NOT_FOUND, response.responseStatusCode);
-    assertEquals(NOT_FOUND.toString(), response.body);
+    assertEquals(NOT_FOUND.toString(), response.getBody());
   }
 
   @Test
@@ -76,13 +105,50 @@ public class ResponseTest {
     assertEquals("9", response.getHeader("Content-Length"));
   }
 
+  @Test
+  public void testBinaryBodyIsKeptByteForByte() throws Exception {
+    byte[] body = new byte[256];
+    for (int i = 0; i < body.length; i++)
+      body[i] = (byte) i;
+
+    Response response = new Response();
+    response.responseStatusCode = OK;
+    response.setBody(body);
+
+    ByteBuffer[] message = response.serialize();
+    assertEquals(2, message.length);
+    assertEquals("HTTP/1.1 200 OK\r\nContent-Length: 256\r\n\r\n", ISO_8859_1.decode(message[0]).toString());
+    assertEquals(ByteBuffer.wrap(body), message[1]);
+  }
+
+  @Test
+  public void testBodyIsAssembledFromParts() throws Exception {
+    Response response = new Response();
+    response.responseStatusCode = OK;
+    response.setBody(Arrays.asList(BodyPart.of("foo".getBytes(ISO_8859_1)), BodyPart.of(ByteBuffer.wrap("bar".getBytes(ISO_8859_1)))));
+
+    assertEquals("6", response.getHeader("Content-Length"));
+    assertEquals("foobar", response.getBody());
+    assertEquals(3, response.serialize().length);
+  }
+
+  @Test
+  public void testStringBodyIsEncodedWithBodyCharset() throws Exception {
+    Response response = new Response();
+    response.bodyCharset = UTF_8;
+    response.setBody("«test»");
+
+    assertEquals("8", response.getHeader("Content-Length"));
+    assertEquals("«test»", response.getBody());
+  }
+
   @Test
   public void testNoBodyIsAllowedForResponsesToHeadRequests_RFC2616_9_4() throws Exception {
     Response response = new Response();
     response.requestMethod = "HEAD";
     response.setBody("Some body here");
 
-    assertEquals(null, response.body);
+    assertEquals(null, response.getBody());
     assertEquals("14", response.getHeader("Content-Length"));
   }
 
@@ -138,7 +204,8 @@ public class ResponseTest {
   public void testGenerateMessageWithBodyAndNoHeaders_RFC2616_6() throws Exception {
     Response response = new Response();
     response.responseStatusCode = OK;
-    response.body = "test";
+    response.setBody("test");
+    response.headers.remove("Content-Length");
 
     assertEquals("HTTP/1.1 200 OK\r\n\r\ntest", response.generateMessage());
   }
@@ -170,6 +237,22 @@ public class ResponseTest {
     }
   }
 
+  @Test
+  public void testNotModifiedResponseMustNotHaveBody_RFC7232_4_1() throws Exception {
+    Response response = new Response();
+    response.responseStatusCode = NOT_MODIFIED;
+    response.setHeader("ETag", "\"tag\"");
+    assertEquals("HTTP/1.1 304 Not Modified\r\nETag: \"tag\"\r\n\r\n", response.generateMessage());
+
+    response.setBody("test");
+    try {
+      response.generateMessage();
+      fail();
+    } catch (RuntimeException e) {
+      assertEquals("Responses with status 304 Not Modified must not include a message body", e.getMessage());
+    }
+  }
+
   @Test
   public void testGenerateMessageValidatesContentHeaders() throws Exception {
     Response response = new Response();
@@ -0,0 +1,184 @@
+package core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static core.Router.toPattern;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+
+public class RouterTest {
+  private Map<Pattern, Handler> handlers;
+  private List<String> calls;
+  private Request request;
+
+  @Before
+  public void setUp() throws Exception {
+    handlers = new LinkedHashMap<>();
+    calls = new ArrayList<>();
+  }
+
+  @Test
+  public void testToPattern() throws Exception {
+    assertEquals("/users/(?<id>[^/]+)", toPattern("/users/{id}"));
+    assertEquals("/a{2}/(?<name>[^/]+)\\.txt", toPattern("/a{2}/{name}\\.txt"));
+    assertEquals("/.*", toPattern("/.*"));
+    assertEquals("/\\p{Alpha}+/(?<id>[^/]+)", toPattern("/\\p{Alpha}+/{id}"));
+    assertEquals("/\\P{L}\\x{41}\\N{SPACE}", toPattern("/\\P{L}\\x{41}\\N{SPACE}"));
+    assertEquals("/\\Q{id}\\E/(?<id>[^/]+)", toPattern("/\\Q{id}\\E/{id}"));
+  }
+
+  @Test
+  public void testLiteralRoutesMatchWholePath() throws Exception {
+    add("/abc", "abc");
+    add("/abcd", "abcd");
+
+    assertEquals(asList("abc"), route("/abc"));
+    assertEquals(asList("abcd"), route("/abcd"));
+    assertEquals(emptyList(), route("/ab"));
+    assertEquals(emptyList(), route("/abc/"));
+  }
+
+  @Test
+  public void testPrefixRoutes() throws Exception {
+    add(".*", "all");
+    add("/static/.*", "static");
+
+    assertEquals(asList("all", "static"), route("/static/app.js"));
+    assertEquals(asList("all", "static"), route("/static/"));
+    assertEquals(asList("all"), route("/static"));
+    assertEquals(emptyList(), route("/static/a\nb"));
+  }
+
+  @Test
+  public void testPathParameters() throws Exception {
+    add(toPattern("/users/{id}"), "user");
+    add(toPattern("/users/{id}/posts/{post}"), "post");
+    add(toPattern("/files/{name}\\.txt"), "file");
+
+    assertEquals(asList("user"), route("/users/42"));
+    assertEquals("42", request.pathParameters.get("id"));
+
+    assertEquals(asList("post"), route("/users/42/posts/7"));
+    assertEquals("42", request.pathParameters.get("id"));
+    assertEquals("7", request.pathParameters.get("post"));
+
+    assertEquals(asList("file"), route("/files/a.b.txt"));
+    assertEquals("a.b", request.pathParameters.get("name"));
+
+    assertEquals(emptyList(), route("/users/"));
+    assertEquals(emptyList(), route("/users/42/43"));
+  }
+
+  @Test
+  public void testParameterFollowedByPrefixMatchesOnce() throws Exception {
+    add(toPattern("/files/{name}.*"), "file");
+
+    assertEquals(asList("file"), route("/files/a.txt"));
+    assertEquals("a.txt", request.pathParameters.get("name"));
+  }
+
+  @Test
+  public void testAdjacentParametersMatchOnce() throws Exception {
+    add(toPattern("/{a}{b}"), "pair");
+
+    assertEquals(asList("pair"), route("/xyz"));
+    assertEquals("xy", request.pathParameters.get("a"));
+    assertEquals("z", request.pathParameters.get("b"));
+    assertEquals(emptyList(), route("/x"));
+  }
+
+  @Test
+  public void testRegularExpressionFallback() throws Exception {
+    add("/img/[a-z]+\\.png", "png");
+    add("/(?<year>[0-9]{4})/.*", "archive");
+    handlers.put(Pattern.compile("/CASE", Pattern.CASE_INSENSITIVE), new Recorder("case"));
+
+    assertEquals(asList("png"), route("/img/logo.png"));
+    assertEquals(emptyList(), route("/img/Logo.png"));
+    assertEquals(asList("archive"), route("/2016/index.html"));
+    assertEquals("2016", request.pathParameters.get("year"));
+    assertEquals(asList("case"), route("/case"));
+  }
+
+  @Test
+  public void testRegistrationOrderIsPriority() throws Exception {
+    add("/a/b", "literal");
+    add(toPattern("/a/{x}"), "parameter");
+    add("/a/.*", "prefix");
+    add("/[a]/b", "regex");
+    add(".*", "all");
+
+    assertEquals(asList("literal", "parameter", "prefix", "regex", "all"), route("/a/b"));
+  }
+
+  @Test
+  public void testHandlerCanEndChain() throws Exception {
+    add("/a/.*", "first");
+    handlers.put(Pattern.compile("/a/b"), new Handler() {
+      @Override
+      protected void handle(Request request, Response response) {
+        calls.add("last");
+        response.endHandlerChain();
+      }
+    });
+    add(".*", "never");
+
+    assertEquals(asList("first", "last"), route("/a/b"));
+    assertEquals(asList("first", "never"), route("/a/c"));
+  }
+
+  @Test
+  public void testManyRoutes() throws Exception {
+    for (int i = 0; i < 500; i++)
+      add(toPattern("/api/v1/resource" + i + "/{id}"), "r" + i);
+
+    Router router = new Router(handlers);
+    assertEquals(500, router.getNumberOfRoutes());
+    assertEquals(asList("r499"), route(router, "/api/v1/resource499/x"));
+    assertEquals(asList("r4"), route(router, "/api/v1/resource4/x"));
+  }
+
+  private void add(String pattern, String name) {
+    handlers.put(Pattern.compile(pattern), new Recorder(name));
+  }
+
+  private List<String> route(String path) throws Exception {
+    return route(new Router(handlers), path);
+  }
+
+  private List<String> route(Router router, String path) throws Exception {
+    calls.clear();
+    request = new Request();
+    request.requestURI = new URI(null, null, path, null);
+    router.route(request, new Response(request));
+    return new ArrayList<>(calls);
+  }
+
+  private class Recorder extends Handler {
+    private final String name;
+
+    Recorder(String name) {
+      this.name = name;
+    }
+
+    @Override
+    protected void handle(Request request, Response response) {
+      calls.add(name);
+    }
+  }
+
+  @Test
+  public void testRouteNameIsRecordedForMetrics() throws Exception {
+    assertEquals("/users/{id}/posts", Router.toRoute(Router.toPattern("/users/{id}/posts")));
+    assertEquals("/static/.*", Router.toRoute("/static/.*"));
+  }
+}
@@ -8,21 +8,37 @@ import util.LinkedCaseInsensitiveMap;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.function.BooleanSupplier;
 import java.util.regex.Pattern;
 
-import static core.HttpMessageReader.readExactNumberOfBytes;
-import static core.HttpMessageReader.readStartLineAndHeaders;
 import static core.HttpRequestRegEx.CRLF;
 import static core.HttpRequestRegEx.getParsedBodyCharset;
+import static core.HttpStatusCode.NOT_FOUND;
 import static core.HttpStatusCode.OK;
+import static core.HttpStatusCode.PARTIAL_CONTENT;
+import static core.HttpStatusCode.REQUEST_ENTITY_TOO_LARGE;
+import static core.HttpStatusCode.REQUEST_HEADER_FIELDS_TOO_LARGE;
 import static core.HttpStatusCode.REQUEST_TIMEOUT;
+import static core.HttpStatusCode.SERVICE_UNAVAILABLE;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 public class ServerTest {
   Thread serverThread;
@@ -47,7 +63,11 @@ public class ServerTest {
   }
 
   public void startServer(LinkedHashMap<Pattern, Handler> handlers) {
-    server = new Server(getConfiguration());
+    startServer(getConfiguration(), handlers);
+  }
+
+  public void startServer(Configuration configuration, Map<Pattern, Handler> handlers) {
+    server = new Server(configuration);
     server.handlers = handlers;
     serverThread = new Thread(server::start);
     serverThread.start();
@@ -60,6 +80,7 @@ public class ServerTest {
     server.stop();
     serverThread.interrupt();
     awaitCondition(10000, () -> !server.isRunning());
+    serverThread.join(10000);
     server = null;
     serverThread = null;
   }
@@ -79,6 +100,388 @@ public class ServerTest {
     assertEquals("HTTP/1.1 " + REQUEST_TIMEOUT, statusLine);
   }
 
+  @Test
+  public void testKeepAliveConnectionServesSeveralRequests() throws Exception {
+    try (
+      Socket clientSocket = new Socket("localhost", 8361);
+      OutputStream out = clientSocket.getOutputStream();
+      InputStream in = clientSocket.getInputStream()
+    ) {
+      HttpMessageReader reader = new HttpMessageReader(in, getConfiguration().getMaximumHeadersSize());
+
+      out.write("GET /test.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(ISO_8859_1));
+      readServerResponse(reader);
+      assertEquals("HTTP/1.1 " + OK, statusLine);
+      assertEquals("<h1>Example</h1>", body);
+
+      out.write("GET /test.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(ISO_8859_1));
+      readServerResponse(reader);
+      assertEquals("HTTP/1.1 " + OK, statusLine);
+      assertEquals("close", headers.get("Connection"));
+      assertEquals("<h1>Example</h1>", body);
+
+      assertEquals(-1, in.read());
+    }
+  }
+
+  @Test
+  public void testPipelinedRequestsAreAnsweredInOrder() throws Exception {
+    try (
+      Socket clientSocket = new Socket("localhost", 8361);
+      OutputStream out = clientSocket.getOutputStream();
+      InputStream in = clientSocket.getInputStream()
+    ) {
+      HttpMessageReader reader = new HttpMessageReader(in, getConfiguration().getMaximumHeadersSize());
+
+      out.write(("GET /test.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+        "GET /missing.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+        "HEAD /test.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(ISO_8859_1));
+
+      readServerResponse(reader);
+      assertEquals("HTTP/1.1 " + OK, statusLine);
+      assertEquals("<h1>Example</h1>", body);
+
+      readServerResponse(reader);
+      assertEquals("HTTP/1.1 " + NOT_FOUND, statusLine);
+
+      readServerResponse(reader);
+      assertEquals("HTTP/1.1 " + OK, statusLine);
+      assertEquals("16", headers.get("Content-Length"));
+      assertEquals("", body);
+    }
+  }
+
+  @Test
+  public void testRequestSentInSeveralPackets() throws Exception {
+    try (
+      Socket clientSocket = new Socket("localhost", 8361);
+      OutputStream out = clientSocket.getOutputStream();
+      InputStream in = clientSocket.getInputStream()
+    ) {
+      clientSocket.setTcpNoDelay(true);
+      for (String packet : new String[] {"GET /test.html HT", "TP/1.1\r\nHost: loc", "alhost\r\n\r", "\n"}) {
+        out.write(packet.getBytes(ISO_8859_1));
+        out.flush();
+        Thread.sleep(20);
+      }
+
+      readServerResponse(new HttpMessageReader(in, getConfiguration().getMaximumHeadersSize()));
+      assertEquals("HTTP/1.1 " + OK, statusLine);
+      assertEquals("<h1>Example</h1>", body);
+    }
+  }
+
+  @Test
+  public void testOversizedRequestsAreRejectedBeforeReadingThem() throws Exception {
+    Configuration configuration = getConfiguration();
+    configuration.setMaximumHeadersSize(1024);
+    configuration.setMaximumBodySize(1024);
+    restartServer(configuration);
+
+    sendRequest("GET /test.html HTTP/1.1\r\nHost: localhost\r\nCookie: " + new String(new char[2048]).replace('\0', 'a') + "\r\n\r\n");
+    assertEquals("HTTP/1.1 " + REQUEST_HEADER_FIELDS_TOO_LARGE, statusLine);
+    assertEquals("close", headers.get("Connection"));
+
+    sendRequest("POST /test.html HTTP/1.1\r\nHost: localhost\r\nContent-Length: 1000000000\r\n\r\n");
+    assertEquals("HTTP/1.1 " + REQUEST_ENTITY_TOO_LARGE, statusLine);
+    assertEquals("close", headers.get("Connection"));
+  }
+
+  @Test
+  public void testMetricsAreExposedInPrometheusFormat() throws Exception {
+    Configuration configuration = getConfiguration();
+    configuration.setMetricsPath("/metrics");
+    restartServer(configuration);
+
+    sendRequest("GET /test.html HTTP/1.1\r\nHost: localhost\r\n\r\n");
+    // The client can read a response before its request is recorded, but not before its connection is released.
+    assertTrue(awaitCondition(10000, () -> server.getActiveConnections() == 0));
+    sendRequest("GET /metrics HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+    assertEquals("HTTP/1.1 " + OK, statusLine);
+    assertTrue(headers.get("Content-Type").startsWith("text/plain; version=0.0.4"));
+    assertTrue(body, body.contains("httpserver_request_duration_seconds_count{route=\".*\"} 1\n"));
+    assertTrue(body, body.contains("httpserver_response_duration_seconds_count{status=\"200\"} 1\n"));
+    assertTrue(body, body.contains("httpserver_phase_duration_seconds_count{phase=\"handler\"} 1\n"));
+    assertTrue(body, body.contains("httpserver_active_connections 1\n"));
+  }
+
+  @Test
+  public void testRequestsAreWrittenToAccessLog() throws Exception {
+    Path log = Files.createTempFile("access", ".log");
+    try {
+      Configuration configuration = getConfiguration();
+      configuration.setAccessLogPath(log.toString());
+      restartServer(configuration);
+
+      sendRequest("GET /test.html?a=1 HTTP/1.1\r\nHost: localhost\r\nReferer: http://localhost/\r\nUser-Agent: test\r\n\r\n");
+      assertTrue(awaitCondition(10000, () -> server.getActiveConnections() == 0));
+      sendRequest("GET /missing HTTP/1.0\r\nHost: localhost\r\n\r\n");
+      tearDown();
+      setUp();
+
+      List<String> lines = Files.readAllLines(log, ISO_8859_1);
+      assertEquals(2, lines.size());
+      assertTrue(lines.get(0), lines.get(0).matches("127\\.0\\.0\\.1 - - \\[.+\\] \"GET /test.html\\?a=1 HTTP/1.1\" 200 16 \"http://localhost/\" \"test\""));
+      assertTrue(lines.get(1), lines.get(1).matches(".+ \"GET /missing HTTP/1.0\" 404 [0-9]+ \"-\" \"-\""));
+    } finally {
+      Files.delete(log);
+    }
+  }
+
+  @Test
+  public void testPortIsNotBoundWhenRequestLogCanNotBeOpened() throws Exception {
+    tearDown();
+    Path file = Files.createTempFile("access", ".log");
+    Configuration configuration = getConfiguration();
+    configuration.setAccessLogPath(file.resolve("access.log").toString());
+    try {
+      new Server(configuration).start();
+      fail();
+    } catch (RuntimeException expected) {
+    } finally {
+      Files.delete(file);
+    }
+
+    new ServerSocket(8361).close();
+    setUp();
+  }
+
+  @Test
+  public void testSlowRequestsAreLoggedWithPhaseTimings() throws Exception {
+    Path log = Files.createTempFile("slow", ".log");
+    try {
+      Configuration configuration = getConfiguration();
+      configuration.setSlowRequestLogPath(log.toString());
+      configuration.setSlowRequestThreshold(0);
+      restartServer(configuration);
+
+      sendRequest("GET /test.html HTTP/1.1\r\nHost: localhost\r\n\r\n");
+      tearDown();
+      setUp();
+
+      List<String> lines = Files.readAllLines(log, ISO_8859_1);
+      assertEquals(1, lines.size());
+      assertTrue(lines.get(0), lines.get(0).matches(".+ 127\\.0\\.0\\.1 \"GET /test.html HTTP/1.1\" 200 route=\\.\\* total=[0-9.]+ms" +
+        " accept=-?[0-9.]+ first_byte=0.000 headers=[0-9.]+ body=[0-9.]+ parsed=[0-9.]+ handler_start=[0-9.]+" +
+        " handler_end=[0-9.]+ written=[0-9.]+"));
+    } finally {
+      Files.delete(log);
+    }
+  }
+
+  @Test
+  public void testUploadedFileCanBeSentBackBeforeItIsDeleted() throws Exception {
+    Path[] upload = new Path[1];
+    LinkedHashMap<Pattern, Handler> handlers = new LinkedHashMap<>();
+    handlers.put(Pattern.compile(".*"), new Handler() {
+      @Override
+      protected void handle(Request request, Response response) {
+        try {
+          upload[0] = request.getPart("file").getFile();
+          response.responseStatusCode = OK;
+          response.setBody(upload[0]);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    });
+    Configuration configuration = getConfiguration();
+    configuration.setPartMemoryThreshold(4);
+    restartServer(configuration, handlers);
+
+    String content = "--xyz\r\nContent-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\n\r\nuploaded content\r\n--xyz--";
+    sendRequest("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Type: multipart/form-data; boundary=xyz\r\nContent-Length: " +
+      content.length() + "\r\n\r\n" + content);
+
+    assertEquals("HTTP/1.1 " + OK, statusLine);
+    assertEquals("uploaded content", body);
+    assertTrue(awaitCondition(10000, () -> !Files.exists(upload[0])));
+  }
+
+  @Test
+  public void testRegularExpressionWithUnicodePropertyIsNotTakenForPathParameter() throws Exception {
+    Server routes = new Server(getConfiguration());
+    routes.setHandler("/users/{id}", new Handler() {
+      @Override
+      protected void handle(Request request, Response response) {
+        response.responseStatusCode = OK;
+        response.setBody("user " + request.pathParameters.get("id"));
+      }
+    });
+    routes.setHandler("/\\p{Alpha}+", new Handler() {
+      @Override
+      protected void handle(Request request, Response response) {
+        if (response.responseStatusCode != null)
+          return;
+        response.responseStatusCode = OK;
+        response.setBody("letters");
+      }
+    });
+    restartServer(getConfiguration(), routes.handlers);
+
+    sendRequest("GET /abc HTTP/1.1\r\nHost: localhost\r\n\r\n");
+    assertEquals("HTTP/1.1 " + OK, statusLine);
+    assertEquals("letters", body);
+
+    sendRequest("GET /users/42 HTTP/1.1\r\nHost: localhost\r\n\r\n");
+    assertEquals("HTTP/1.1 " + OK, statusLine);
+    assertEquals("user 42", body);
+  }
+
+  @Test
+  public void testChunkedRequestIsEchoedInChunks() throws Exception {
+    LinkedHashMap<Pattern, Handler> handlers = new LinkedHashMap<>();
+    handlers.put(Pattern.compile(".*"), new Handler() {
+      @Override
+      protected void handle(Request request, Response response) {
+        String content = request.getBody() + request.getTrailers().get("Checksum");
+        response.responseStatusCode = OK;
+        response.setBody(out -> out.write(content.getBytes(ISO_8859_1)));
+      }
+    });
+    restartServer(getConfiguration(), handlers);
+
+    try (
+      Socket clientSocket = new Socket("localhost", 8361);
+      OutputStream out = clientSocket.getOutputStream();
+      InputStream in = clientSocket.getInputStream()
+    ) {
+      clientSocket.setTcpNoDelay(true);
+      for (String packet : new String[] {"POST / HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n4\r",
+        "\nWiki\r\n5\r\nped", "ia\r\n0\r\nChecksum: 1", "\r\n\r\n"}) {
+        out.write(packet.getBytes(ISO_8859_1));
+        out.flush();
+        Thread.sleep(20);
+      }
+
+      readServerResponse(new HttpMessageReader(in, getConfiguration().getMaximumHeadersSize()));
+      assertEquals("HTTP/1.1 " + OK, statusLine);
+      assertEquals("chunked", headers.get("Transfer-Encoding"));
+      assertEquals("Wikipedia1", body);
+    }
+  }
+
+  @Test
+  public void testLargeFileIsStreamedFromDisk() throws Exception {
+    Path documentRoot = Files.createTempDirectory("httpserver");
+    Path file = documentRoot.resolve("large.bin");
+    byte[] content = new byte[8 * 1024 * 1024];
+    new Random(42).nextBytes(content);
+    Files.write(file, content);
+
+    try {
+      Map<Pattern, Handler> handlers = new LinkedHashMap<>();
+      handlers.put(Pattern.compile(".*"), new FileSystemHandler(documentRoot.toString()));
+      restartServer(getConfiguration(), handlers);
+
+      try (
+        Socket clientSocket = new Socket("localhost", 8361);
+        OutputStream out = clientSocket.getOutputStream();
+        InputStream in = clientSocket.getInputStream()
+      ) {
+        out.write("GET /large.bin HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(ISO_8859_1));
+        HttpMessageReader reader = new HttpMessageReader(in, getConfiguration().getMaximumHeadersSize());
+        readServerResponse(reader);
+
+        assertEquals("HTTP/1.1 " + OK, statusLine);
+        assertEquals("" + content.length, headers.get("Content-Length"));
+        assertArrayEquals(content, body.getBytes(ISO_8859_1));
+      }
+    } finally {
+      Files.delete(file);
+      Files.delete(documentRoot);
+    }
+  }
+
+  @Test
+  public void testByteRangeIsSentFromFileOffset() throws Exception {
+    sendRequest("GET /test.html HTTP/1.1\r\nHost: localhost\r\nRange: bytes=4-10\r\n\r\n");
+
+    assertEquals("HTTP/1.1 " + PARTIAL_CONTENT, statusLine);
+    assertEquals("bytes 4-10/16", headers.get("Content-Range"));
+    assertEquals("Example", body);
+  }
+
+  @Test
+  public void testConnectionsOverTheLimitAreShedWithServiceUnavailable() throws Exception {
+    Configuration configuration = getConfiguration();
+    configuration.setMaximumConnections(1);
+    restartServer(configuration);
+
+    Socket idleConnection = new Socket("localhost", 8361);
+    try {
+      awaitCondition(1000, () -> server.getActiveConnections() == 1);
+      sendRequest("GET /test.html HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+      assertEquals("HTTP/1.1 " + SERVICE_UNAVAILABLE, statusLine);
+      assertEquals("1", headers.get("Retry-After"));
+      assertEquals("close", headers.get("Connection"));
+      assertEquals(1, server.getShedConnections());
+    } finally {
+      idleConnection.close();
+    }
+  }
+
+  @Test
+  public void testFullWorkQueueIsShedWithServiceUnavailable() throws Exception {
+    assumeTrue(getConfiguration().getEngine() == Engine.THREAD_POOL);
+    Configuration configuration = getConfiguration();
+    configuration.setNumberOfThreads(1);
+    configuration.setWorkQueueCapacity(1);
+    restartServer(configuration);
+
+    Socket busyConnection = new Socket("localhost", 8361);
+    Socket queuedConnection = new Socket("localhost", 8361);
+    try {
+      awaitCondition(1000, () -> server.getActiveConnections() == 2);
+      sendRequest("GET /test.html HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+      assertEquals("HTTP/1.1 " + SERVICE_UNAVAILABLE, statusLine);
+      assertEquals(1, server.getShedConnections());
+    } finally {
+      queuedConnection.close();
+      busyConnection.close();
+    }
+  }
+
+  @Test
+  public void testStopAcceptingDefersConnectionsOverTheLimit() throws Exception {
+    Configuration configuration = getConfiguration();
+    configuration.setMaximumConnections(1);
+    configuration.setOverloadPolicy(OverloadPolicy.STOP_ACCEPTING);
+    restartServer(configuration);
+
+    Socket firstConnection = new Socket("localhost", 8361);
+    firstConnection.getOutputStream().write("GET /test.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(ISO_8859_1));
+    readServerResponse(new HttpMessageReader(firstConnection.getInputStream(), getConfiguration().getMaximumHeadersSize()));
+    assertEquals("HTTP/1.1 " + OK, statusLine);
+
+    try (Socket secondConnection = new Socket("localhost", 8361)) {
+      secondConnection.getOutputStream().write("GET /test.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(ISO_8859_1));
+      secondConnection.setSoTimeout(300);
+      try {
+        secondConnection.getInputStream().read();
+        fail("Connection over the limit should not be served");
+      } catch (SocketTimeoutException expected) {}
+
+      firstConnection.close();
+      secondConnection.setSoTimeout(5000);
+      readServerResponse(new HttpMessageReader(secondConnection.getInputStream(), getConfiguration().getMaximumHeadersSize()));
+      assertEquals("HTTP/1.1 " + OK, statusLine);
+      assertEquals(0, server.getShedConnections());
+    }
+  }
+
+  private void restartServer(Configuration configuration) throws Exception {
+    restartServer(configuration, server.handlers);
+  }
+
+  private void restartServer(Configuration configuration, Map<Pattern, Handler> handlers) throws Exception {
+    tearDown();
+    startServer(configuration, handlers);
+  }
+
   private boolean awaitCondition(long milliseconds, BooleanSupplier condition) {
     long endTime = System.currentTimeMillis() + milliseconds;
     while(System.currentTimeMillis() < endTime) {
@@ -88,7 +491,7 @@ public class ServerTest {
     return false;
   }
 
-  private Configuration getConfiguration() {
+  Configuration getConfiguration() {
     Configuration configuration = new Configuration();
     configuration.setPort(8361);
     configuration.setRequestTimeOut(500);
@@ -118,12 +521,13 @@ public class ServerTest {
         out.write(request);
         out.flush();
       }
-      readServerResponse(in);
+      readServerResponse(new HttpMessageReader(in, getConfiguration().getMaximumHeadersSize()));
     }
   }
 
-  private void readServerResponse(InputStream in) throws IOException {
-    String[] statusLineAndHeaders = readStartLineAndHeaders(in).split(CRLF, 2);
+  private void readServerResponse(HttpMessageReader reader) throws IOException {
+    headers.clear();
+    String[] statusLineAndHeaders = reader.readStartLineAndHeaders().split(CRLF, 2);
 
     statusLine = statusLineAndHeaders[0];
     parseHeaders(statusLineAndHeaders[1]);
@@ -133,7 +537,9 @@ public class ServerTest {
       Charset bodyCharset = getParsedBodyCharset(headers.get("Content-Type"));
       if (bodyCharset == null)
         bodyCharset = new Response().bodyCharset;
-      body = readExactNumberOfBytes(in,Integer.parseInt(contentLength), bodyCharset);
+      body = reader.readExactNumberOfBytes(Integer.parseInt(contentLength), bodyCharset);
+    } else if ("chunked".equals(headers.get("Transfer-Encoding"))) {
+      body = new String(new ChunkedRequestBody(reader, Long.MAX_VALUE, 65536).readAllBytes(), ISO_8859_1);
     }
   }
 
@@ -0,0 +1,11 @@
+package core;
+
+public class VirtualThreadServerTest extends ServerTest {
+
+  @Override
+  Configuration getConfiguration() {
+    Configuration configuration = super.getConfiguration();
+    configuration.setEngine(Engine.VIRTUAL_THREADS);
+    return configuration;
+  }
+}
@@ -0,0 +1,142 @@
+package events;
+
+import core.Configuration;
+import core.Handler;
+import core.HttpStatusCode;
+import core.Request;
+import core.Response;
+import core.Server;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestEventsTest {
+  private static final int PORT = 8362;
+  private static final String[] EVENTS = {
+    "httpserver.ConnectionAccept", "httpserver.ConnectionClose", "httpserver.RequestParse",
+    "httpserver.HandlerDispatch", "httpserver.ResponseWrite"
+  };
+
+  Server server;
+  Thread serverThread;
+  RecordingStream recording;
+  Map<String, RecordedEvent> events = new ConcurrentHashMap<>();
+  CountDownLatch received = new CountDownLatch(EVENTS.length);
+
+  public static class HelloHandler extends Handler {
+    @Override
+    protected void handle(Request request, Response response) {
+      response.responseStatusCode = HttpStatusCode.OK;
+      response.setBody("hello");
+    }
+  }
+
+  public static class StreamHandler extends Handler {
+    @Override
+    protected void handle(Request request, Response response) {
+      response.responseStatusCode = HttpStatusCode.OK;
+      response.setBody(out -> out.write("streamed".getBytes(ISO_8859_1)));
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    recording = new RecordingStream();
+    for (String name : EVENTS) {
+      recording.enable(name).withThreshold(Duration.ZERO);
+      recording.onEvent(name, event -> {
+        if (events.putIfAbsent(name, event) == null)
+          received.countDown();
+      });
+    }
+    recording.startAsync();
+
+    Configuration configuration = new Configuration();
+    configuration.setPort(PORT);
+    server = new Server(configuration);
+    server.setHandler("/users/{id}", new HelloHandler());
+    server.setHandler("/stream", new StreamHandler());
+    serverThread = new Thread(server::start);
+    serverThread.start();
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!server.isRunning() && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop();
+    serverThread.join(10000);
+    recording.close();
+  }
+
+  @Test
+  public void testRequestLifecycleEvents() throws Exception {
+    try (
+      Socket socket = new Socket("localhost", PORT);
+      OutputStream out = socket.getOutputStream();
+      InputStream in = socket.getInputStream()
+    ) {
+      out.write("GET /users/42?page=2 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(ISO_8859_1));
+      String response = new String(in.readAllBytes(), ISO_8859_1);
+      assertTrue(response, response.startsWith("HTTP/1.1 200"));
+    }
+    assertTrue("Missing events, received " + events.keySet(), received.await(20, TimeUnit.SECONDS));
+
+    assertTrue(events.get("httpserver.ConnectionAccept").getString("remoteAddress").contains("127.0.0.1"));
+
+    RecordedEvent close = events.get("httpserver.ConnectionClose");
+    assertTrue(close.getString("remoteAddress").contains("127.0.0.1"));
+    assertEquals(1, close.getInt("requests"));
+
+    RecordedEvent parse = events.get("httpserver.RequestParse");
+    assertEquals("GET", parse.getString("method"));
+    assertEquals("/users/42?page=2", parse.getString("target"));
+    assertEquals("HTTP/1.1", parse.getString("version"));
+    assertTrue(parse.getInt("headerBytes") > 0);
+    assertEquals(0, parse.getInt("errorStatus"));
+
+    RecordedEvent dispatch = events.get("httpserver.HandlerDispatch");
+    assertEquals("/users/{id}", dispatch.getString("route"));
+    assertEquals(HelloHandler.class.getName(), dispatch.getClass("handlerClass").getName());
+    assertEquals("GET", dispatch.getString("method"));
+    assertEquals("/users/42", dispatch.getString("path"));
+
+    RecordedEvent write = events.get("httpserver.ResponseWrite");
+    assertEquals(200, write.getInt("status"));
+    assertTrue(write.getLong("bytes") > "hello".length());
+    assertTrue(write.getDuration().compareTo(Duration.ZERO) >= 0);
+  }
+
+  @Test
+  public void testStreamedBodyIsCountedWithoutChunking() throws Exception {
+    String response;
+    try (
+      Socket socket = new Socket("localhost", PORT);
+      OutputStream out = socket.getOutputStream();
+      InputStream in = socket.getInputStream()
+    ) {
+      out.write("GET /stream HTTP/1.0\r\nHost: localhost\r\n\r\n".getBytes(ISO_8859_1));
+      response = new String(in.readAllBytes(), ISO_8859_1);
+      assertTrue(response, response.endsWith("\r\n\r\nstreamed"));
+    }
+    assertTrue("Missing events, received " + events.keySet(), received.await(20, TimeUnit.SECONDS));
+
+    assertEquals(response.length(), events.get("httpserver.ResponseWrite").getLong("bytes"));
+  }
+}
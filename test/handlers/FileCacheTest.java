@@ -0,0 +1,138 @@
+package handlers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileCacheTest {
+  private Path directory;
+  private FileCache fileCache;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("file-cache");
+    fileCache = new FileCache(10, 5);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    fileCache.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void testSecondReadIsServedFromCache() throws Exception {
+    Path file = write("a.txt", "abc");
+
+    assertEquals("abc", read(file));
+    assertEquals("abc", read(file));
+
+    assertEquals(1, fileCache.getMisses());
+    assertEquals(1, fileCache.getHits());
+    assertEquals(3, fileCache.getSize());
+  }
+
+  @Test
+  public void testFilesOverEntrySizeAreNotCached() throws Exception {
+    Path file = write("large.txt", "abcdef");
+
+    assertNull(fileCache.get(file));
+    assertEquals(0, fileCache.getNumberOfEntries());
+  }
+
+  @Test
+  public void testDirectoriesAndMissingFilesAreNotCached() throws Exception {
+    assertNull(fileCache.get(directory));
+    assertNull(fileCache.get(directory.resolve("missing.txt")));
+    assertEquals(0, fileCache.getNumberOfEntries());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntryIsEvictedWhenBudgetIsExceeded() throws Exception {
+    Path first = write("1.txt", "1111");
+    Path second = write("2.txt", "2222");
+    Path third = write("3.txt", "3333");
+
+    read(first);
+    read(second);
+    read(first);
+    read(third);
+
+    assertEquals(1, fileCache.getEvictions());
+    assertEquals(8, fileCache.getSize());
+
+    long misses = fileCache.getMisses();
+    read(first);
+    read(third);
+    assertEquals(misses, fileCache.getMisses());
+    read(second);
+    assertEquals(misses + 1, fileCache.getMisses());
+  }
+
+  @Test
+  public void testHitDoesNotWaitForWriters() throws Exception {
+    Path file = write("a.txt", "abc");
+    read(file);
+
+    synchronized (fileCache) {
+      CompletableFuture<String> hit = CompletableFuture.supplyAsync(() -> {
+        try {
+          return read(file);
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      });
+      assertEquals("abc", hit.get(10, TimeUnit.SECONDS));
+    }
+    assertEquals(1, fileCache.getHits());
+  }
+
+  @Test
+  public void testModifiedFileIsInvalidated() throws Exception {
+    Path file = write("a.txt", "old");
+    assertEquals("old", read(file));
+
+    write("a.txt", "new");
+    long deadline = System.currentTimeMillis() + 10000;
+    while (fileCache.getNumberOfEntries() > 0 && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+
+    assertEquals("new", read(file));
+  }
+
+  @Test
+  public void testCreatedPrecompressedSiblingInvalidatesEntry() throws Exception {
+    Path file = write("a.txt", "abc");
+    assertFalse(fileCache.get(file).hasPrecompressedSibling());
+
+    write("a.txt.gz", "gz");
+    long deadline = System.currentTimeMillis() + 10000;
+    while (fileCache.getNumberOfEntries() > 0 && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+
+    assertTrue(fileCache.get(file).hasPrecompressedSibling());
+  }
+
+  private Path write(String name, String content) throws Exception {
+    return Files.write(directory.resolve(name), content.getBytes(ISO_8859_1));
+  }
+
+  private String read(Path file) throws Exception {
+    return ISO_8859_1.decode(fileCache.get(file).getContent()).toString();
+  }
+}
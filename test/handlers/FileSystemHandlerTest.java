@@ -6,10 +6,16 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
 
 import static core.HttpStatusCode.*;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static util.Helper.formatHttpDate;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class FileSystemHandlerTest {
@@ -35,6 +41,221 @@ public class FileSystemHandlerTest {
     assertEquals("<h1>Example</h1>", response.getBody());
   }
 
+  @Test
+  public void testFileIsSentFromDiskWithLengthFromMetadata() throws Exception {
+    Request request = new Request();
+    request.requestMethod = "GET";
+    request.requestURI = new URI("http://localhost/test.html");
+    Response response = new Response(request);
+
+    fileSystemHandler.handle(request, response);
+
+    assertTrue(response.hasBodyFile());
+    assertEquals(null, response.getBodyBuffer());
+    assertEquals("16", response.getHeader("Content-Length"));
+  }
+
+  @Test
+  public void testCachedFileIsSentFromMemory() throws Exception {
+    try (FileCache fileCache = new FileCache(1024, 1024)) {
+      fileSystemHandler = new FileSystemHandler(fileSystemHandler.getDocumentRoot(), fileCache);
+
+      for (int i = 0; i < 2; i++) {
+        Request request = new Request();
+        request.requestMethod = "GET";
+        request.requestURI = new URI("http://localhost/test.html");
+        Response response = new Response(request);
+
+        fileSystemHandler.handle(request, response);
+
+        assertEquals(OK, response.responseStatusCode);
+        assertEquals("<h1>Example</h1>", response.getBody());
+        assertEquals("16", response.getHeader("Content-Length"));
+      }
+      assertEquals(1, fileCache.getHits());
+      assertEquals(1, fileCache.getMisses());
+    }
+  }
+
+  @Test
+  public void testFileValidatorsComeFromFileMetadata() throws Exception {
+    Response response = get("/test.html", null, null);
+    BasicFileAttributes attributes = Files.readAttributes(fileSystemHandler.covertRequestURIToLocalFile(new URI("/test.html")).toPath(), BasicFileAttributes.class);
+
+    assertEquals(OK, response.responseStatusCode);
+    assertEquals(fileSystemHandler.generateEntityTag(attributes), response.getHeader("ETag"));
+    assertEquals(formatHttpDate(attributes.lastModifiedTime().toMillis()), response.getHeader("Last-Modified"));
+  }
+
+  @Test
+  public void testNotModifiedWhenEntityTagMatches_RFC7232_3_2() throws Exception {
+    String entityTag = get("/test.html", null, null).getHeader("ETag");
+
+    Response response = get("/test.html", "\"other\", W/" + entityTag, null);
+    assertEquals(NOT_MODIFIED, response.responseStatusCode);
+    assertEquals(entityTag, response.getHeader("ETag"));
+    assertNull(response.getBody());
+    assertNull(response.getHeader("Content-Type"));
+    response.validateResponse();
+
+    assertEquals(OK, get("/test.html", "\"other\"", null).responseStatusCode);
+  }
+
+  @Test
+  public void testNotModifiedSinceLastModified_RFC7232_3_3() throws Exception {
+    String lastModified = get("/test.html", null, null).getHeader("Last-Modified");
+
+    assertEquals(NOT_MODIFIED, get("/test.html", null, lastModified).responseStatusCode);
+    assertEquals(OK, get("/test.html", null, formatHttpDate(0)).responseStatusCode);
+  }
+
+  @Test
+  public void testIfNoneMatchTakesPrecedenceOverIfModifiedSince_RFC7232_6() throws Exception {
+    String lastModified = get("/test.html", null, null).getHeader("Last-Modified");
+
+    assertEquals(OK, get("/test.html", "\"other\"", lastModified).responseStatusCode);
+  }
+
+  @Test
+  public void testSingleByteRange_RFC7233_4_1() throws Exception {
+    Response response = getWithHeaders("/test.html", "Range", "bytes=4-10");
+
+    assertEquals(PARTIAL_CONTENT, response.responseStatusCode);
+    assertEquals("bytes 4-10/16", response.getHeader("Content-Range"));
+    assertEquals("7", response.getHeader("Content-Length"));
+    assertEquals("Example", response.getBody());
+    assertEquals("bytes", response.getHeader("Accept-Ranges"));
+  }
+
+  @Test
+  public void testSuffixAndOpenEndedByteRanges_RFC7233_2_1() throws Exception {
+    assertEquals("</h1>", getWithHeaders("/test.html", "Range", "bytes=-5").getBody());
+    assertEquals("</h1>", getWithHeaders("/test.html", "Range", "bytes=11-").getBody());
+    assertEquals("<h1>Example</h1>", getWithHeaders("/test.html", "Range", "bytes=-100").getBody());
+    assertEquals("</h1>", getWithHeaders("/test.html", "Range", "bytes=11-100").getBody());
+  }
+
+  @Test
+  public void testMultipleByteRanges_RFC7233_A() throws Exception {
+    Response response = getWithHeaders("/test.html", "Range", "bytes=0-3, 11-15");
+
+    assertEquals(PARTIAL_CONTENT, response.responseStatusCode);
+    String contentType = response.getHeader("Content-Type");
+    assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+    String boundary = contentType.substring(contentType.indexOf('=') + 1);
+
+    String body = "--" + boundary + "\r\n" +
+      "Content-Type: text/html; charset=ISO-8859-1\r\n" +
+      "Content-Range: bytes 0-3/16\r\n\r\n" +
+      "<h1>\r\n" +
+      "--" + boundary + "\r\n" +
+      "Content-Type: text/html; charset=ISO-8859-1\r\n" +
+      "Content-Range: bytes 11-15/16\r\n\r\n" +
+      "</h1>\r\n" +
+      "--" + boundary + "--\r\n";
+    assertEquals(body, response.getBody());
+    assertEquals("" + body.length(), response.getHeader("Content-Length"));
+  }
+
+  @Test
+  public void testUnsatisfiableRange_RFC7233_4_4() throws Exception {
+    Response response = getWithHeaders("/test.html", "Range", "bytes=16-20");
+
+    assertEquals(REQUESTED_RANGE_NOT_SATISFIABLE, response.responseStatusCode);
+    assertEquals("bytes */16", response.getHeader("Content-Range"));
+  }
+
+  @Test
+  public void testInvalidRangeIsIgnored_RFC7233_3_1() throws Exception {
+    assertEquals(OK, getWithHeaders("/test.html", "Range", "bytes=5-2").responseStatusCode);
+    assertEquals(OK, getWithHeaders("/test.html", "Range", "items=0-2").responseStatusCode);
+    assertEquals(OK, getWithHeaders("/test.html", "Range", "bytes=a-2").responseStatusCode);
+  }
+
+  @Test
+  public void testRangeIsIgnoredForHeadRequests_RFC7233_3_1() throws Exception {
+    Request request = new Request();
+    request.requestMethod = "HEAD";
+    request.requestURI = new URI("http://localhost/test.html");
+    request.setHeader("Range", "bytes=0-3");
+    Response response = new Response(request);
+
+    fileSystemHandler.handle(request, response);
+
+    assertEquals(OK, response.responseStatusCode);
+    assertEquals("16", response.getHeader("Content-Length"));
+  }
+
+  @Test
+  public void testIfRangeSendsWholeFileWhenValidatorDoesNotMatch_RFC7233_3_2() throws Exception {
+    Response full = get("/test.html", null, null);
+
+    assertEquals(OK, getWithHeaders("/test.html", "Range", "bytes=0-3", "If-Range", "\"other\"").responseStatusCode);
+    assertEquals(OK, getWithHeaders("/test.html", "Range", "bytes=0-3", "If-Range", formatHttpDate(0)).responseStatusCode);
+    assertEquals(PARTIAL_CONTENT, getWithHeaders("/test.html", "Range", "bytes=0-3", "If-Range", full.getHeader("ETag")).responseStatusCode);
+    assertEquals(PARTIAL_CONTENT, getWithHeaders("/test.html", "Range", "bytes=0-3", "If-Range", full.getHeader("Last-Modified")).responseStatusCode);
+  }
+
+  @Test
+  public void testRangeOfCachedFile() throws Exception {
+    try (FileCache fileCache = new FileCache(1024, 1024)) {
+      fileSystemHandler = new FileSystemHandler(fileSystemHandler.getDocumentRoot(), fileCache);
+
+      assertEquals("Example", getWithHeaders("/test.html", "Range", "bytes=4-10").getBody());
+      assertEquals("Example", getWithHeaders("/test.html", "Range", "bytes=4-10").getBody());
+      assertEquals(1, fileCache.getHits());
+    }
+  }
+
+  @Test
+  public void testPrecompressedSiblingIsServedToClientsAcceptingGzip() throws Exception {
+    Path documentRoot = Files.createTempDirectory("precompressed");
+    Path file = Files.write(documentRoot.resolve("page.html"), "<h1>Plain</h1>".getBytes(ISO_8859_1));
+    Path compressed = Files.write(documentRoot.resolve("page.html.gz"), new byte[] {31, -117, 8, 0});
+    try {
+      fileSystemHandler = new FileSystemHandler(documentRoot.toString());
+
+      Response response = getWithHeaders("/page.html", "Accept-Encoding", "gzip, deflate");
+      assertEquals(OK, response.responseStatusCode);
+      assertEquals("gzip", response.getHeader("Content-Encoding"));
+      assertEquals("Accept-Encoding", response.getHeader("Vary"));
+      assertEquals("4", response.getHeader("Content-Length"));
+      assertEquals("text/html; charset=ISO-8859-1", response.getHeader("Content-Type"));
+
+      response = getWithHeaders("/page.html", "Accept-Encoding", "deflate");
+      assertEquals(null, response.getHeader("Content-Encoding"));
+      assertEquals("Accept-Encoding", response.getHeader("Vary"));
+      assertEquals("<h1>Plain</h1>", response.getBody());
+    } finally {
+      Files.delete(compressed);
+      Files.delete(file);
+      Files.delete(documentRoot);
+    }
+  }
+
+  @Test
+  public void testConditionalGetOfPrecompressedSiblingIsNotModified() throws Exception {
+    Path documentRoot = Files.createTempDirectory("precompressed");
+    Path file = Files.write(documentRoot.resolve("page.html"), "<h1>Plain</h1>".getBytes(ISO_8859_1));
+    Path compressed = Files.write(documentRoot.resolve("page.html.gz"), new byte[] {31, -117, 8, 0});
+    try {
+      fileSystemHandler = new FileSystemHandler(documentRoot.toString());
+      String entityTag = getWithHeaders("/page.html", "Accept-Encoding", "gzip").getHeader("ETag");
+
+      Response response = getWithHeaders("/page.html", "Accept-Encoding", "gzip", "If-None-Match", entityTag);
+      response.validateResponse();
+
+      assertEquals(NOT_MODIFIED, response.responseStatusCode);
+      assertEquals(entityTag, response.getHeader("ETag"));
+      assertEquals("Accept-Encoding", response.getHeader("Vary"));
+      assertNull(response.getHeader("Content-Encoding"));
+    } finally {
+      Files.delete(compressed);
+      Files.delete(file);
+      Files.delete(documentRoot);
+    }
+  }
+
   @Test
   public void testHandleFileNotFound() throws Exception {
     Request request = new Request();
@@ -114,4 +335,30 @@ public class FileSystemHandlerTest {
     assertTrue(links.contains("<a href=\"/folder/\">folder</a>"));
     assertTrue(links.contains("<a href=\"/test.html\">test.html</a>"));
   }
-}
\ No newline at end of file
+
+  private Response get(String path, String ifNoneMatch, String ifModifiedSince) throws Exception {
+    Request request = new Request();
+    request.requestMethod = "GET";
+    request.requestURI = new URI("http://localhost" + path);
+    if (ifNoneMatch != null)
+      request.setHeader("If-None-Match", ifNoneMatch);
+    if (ifModifiedSince != null)
+      request.setHeader("If-Modified-Since", ifModifiedSince);
+
+    Response response = new Response(request);
+    fileSystemHandler.handle(request, response);
+    return response;
+  }
+
+  private Response getWithHeaders(String path, String... headers) throws Exception {
+    Request request = new Request();
+    request.requestMethod = "GET";
+    request.requestURI = new URI("http://localhost" + path);
+    for (int i = 0; i < headers.length; i += 2)
+      request.setHeader(headers[i], headers[i + 1]);
+
+    Response response = new Response(request);
+    fileSystemHandler.handle(request, response);
+    return response;
+  }
+}
@@ -0,0 +1,167 @@
+package log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AccessLogTest {
+  private static final long TIME = 971211336000L;
+
+  Path directory;
+  Path path;
+  InetAddress address;
+  String date;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("access-log");
+    path = directory.resolve("access.log");
+    address = InetAddress.getByName("127.0.0.1");
+    date = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(ZoneId.systemDefault())
+      .format(Instant.ofEpochMilli(TIME));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    try (var files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator)
+        Files.delete(file);
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testCombinedLogFormat() throws Exception {
+    AccessLog log = new AccessLog(path, LogFormat.COMBINED, 16, OverflowPolicy.DROP, 0, 0);
+    log.log(address, TIME, "GET", "/apache_pb.gif?a=1", "HTTP/1.0", 200, 2326, "http://www.example.com/start.html", "Mozilla/4.08 \"x\"");
+    log.log(null, TIME, null, null, null, 400, -1, null, null);
+    log.close();
+
+    assertEquals(List.of(
+      "127.0.0.1 - - [" + date + "] \"GET /apache_pb.gif?a=1 HTTP/1.0\" 200 2326 \"http://www.example.com/start.html\" \"Mozilla/4.08 \\\"x\\\"\"",
+      "- - - [" + date + "] \"-\" 400 - \"-\" \"-\""), Files.readAllLines(path, UTF_8));
+  }
+
+  @Test
+  public void testCommonLogFormat() throws Exception {
+    AccessLog log = new AccessLog(path, LogFormat.COMMON, 16, OverflowPolicy.DROP, 0, 0);
+    log.log(address, TIME, "HEAD", "/a\nb", "HTTP/1.1", 304, 0, "http://www.example.com/", "curl");
+    log.close();
+
+    assertEquals(List.of("127.0.0.1 - - [" + date + "] \"HEAD /a\\x0ab HTTP/1.1\" 304 -"), Files.readAllLines(path, UTF_8));
+  }
+
+  @Test
+  public void testRecordsAreDroppedWhenBufferIsFull() throws Exception {
+    AccessLog log = new AccessLog(path, LogFormat.COMMON, 4, OverflowPolicy.DROP, 0, 0, false);
+    for (int i = 0; i < 6; i++)
+      assertEquals(i < 4, log.log(address, TIME, "GET", "/" + i, "HTTP/1.1", 200, 1, null, null));
+    assertEquals(2, log.getDroppedRecords());
+
+    log.start();
+    log.close();
+    List<String> lines = Files.readAllLines(path, UTF_8);
+    assertEquals(4, lines.size());
+    assertTrue(lines.get(3).contains("\"GET /3 HTTP/1.1\""));
+  }
+
+  @Test
+  public void testProducerWaitsForSpaceWithBlockPolicy() throws Exception {
+    AccessLog log = new AccessLog(path, LogFormat.COMMON, 2, OverflowPolicy.BLOCK, 0, 0, false);
+    log.log(address, TIME, "GET", "/0", "HTTP/1.1", 200, 1, null, null);
+    log.log(address, TIME, "GET", "/1", "HTTP/1.1", 200, 1, null, null);
+
+    Thread producer = new Thread(() -> log.log(address, TIME, "GET", "/2", "HTTP/1.1", 200, 1, null, null));
+    producer.start();
+    producer.join(200);
+    assertTrue(producer.isAlive());
+
+    log.start();
+    producer.join(10000);
+    assertFalse(producer.isAlive());
+    log.close();
+
+    assertEquals(3, Files.readAllLines(path, UTF_8).size());
+    assertEquals(0, log.getDroppedRecords());
+  }
+
+  @Test
+  public void testConcurrentProducersLoseNoRecords() throws Exception {
+    AccessLog log = new AccessLog(path, LogFormat.COMMON, 64, OverflowPolicy.BLOCK, 0, 0);
+    Thread[] producers = new Thread[4];
+    for (int i = 0; i < producers.length; i++) {
+      String target = "/" + i;
+      producers[i] = new Thread(() -> {
+        for (int j = 0; j < 10000; j++)
+          log.log(address, TIME, "GET", target, "HTTP/1.1", 200, j, null, null);
+      });
+      producers[i].start();
+    }
+    for (Thread producer : producers)
+      producer.join();
+    log.close();
+
+    List<String> lines = Files.readAllLines(path, UTF_8);
+    assertEquals(40000, lines.size());
+    for (int i = 0; i < producers.length; i++) {
+      String target = "\"GET /" + i + " ";
+      assertEquals(10000, lines.stream().filter(line -> line.contains(target)).count());
+    }
+  }
+
+  @Test
+  public void testFileIsRotatedBySize() throws Exception {
+    AccessLog log = new AccessLog(path, LogFormat.COMMON, 16, OverflowPolicy.BLOCK, 200, 2);
+    for (int i = 0; i < 20; i++) {
+      log.log(address, TIME, "GET", "/" + i, "HTTP/1.1", 200, 1, null, null);
+      Thread.sleep(15);
+    }
+    log.close();
+
+    assertTrue(Files.exists(directory.resolve("access.log.1")));
+    assertTrue(Files.exists(directory.resolve("access.log.2")));
+    assertFalse(Files.exists(directory.resolve("access.log.3")));
+    for (String name : new String[] {"access.log", "access.log.1", "access.log.2"})
+      assertTrue(Files.size(directory.resolve(name)) <= 200);
+    List<String> current = Files.readAllLines(path, UTF_8);
+    assertTrue(current.get(current.size() - 1).contains("\"GET /19 "));
+  }
+
+  @Test
+  public void testFileIsReopenedWhenRotationFails() throws Exception {
+    Path blocker = Files.createDirectory(directory.resolve("access.log.1"));
+    Files.createFile(blocker.resolve("file"));
+    RollingFile file = new RollingFile(path, 10, 1);
+    file.write(ByteBuffer.wrap("0123456789".getBytes(UTF_8)));
+    try {
+      file.write(ByteBuffer.wrap("abc".getBytes(UTF_8)));
+      fail();
+    } catch (IOException expected) {
+    }
+
+    Files.delete(blocker.resolve("file"));
+    Files.delete(blocker);
+    file.write(ByteBuffer.wrap("abc".getBytes(UTF_8)));
+    file.close();
+
+    assertEquals("abc", Files.readString(path));
+    assertEquals("0123456789", Files.readString(directory.resolve("access.log.1")));
+  }
+}
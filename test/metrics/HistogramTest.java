@@ -0,0 +1,65 @@
+package metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+  @Test
+  public void testPercentilesAreWithinBucketPrecision() throws Exception {
+    Histogram histogram = new Histogram();
+    for (long value = 1; value <= 100_000; value++)
+      histogram.record(value * 1000);
+
+    assertEquals(100_000, histogram.getCount());
+    assertEquals(100_000_000L, histogram.getMaximum(), 100_000_000L / 32);
+    assertEquals(50_000_000L, histogram.getValueAtPercentile(50), 50_000_000L / 32);
+    assertEquals(99_000_000L, histogram.getValueAtPercentile(99), 99_000_000L / 32);
+    assertEquals(5_000_050_000_000L, histogram.getSum());
+  }
+
+  @Test
+  public void testCountAtOrBelow() throws Exception {
+    Histogram histogram = new Histogram();
+    histogram.record(10);
+    histogram.record(63);
+    histogram.record(1_000_000);
+
+    assertEquals(1, histogram.getCountAtOrBelow(10));
+    assertEquals(2, histogram.getCountAtOrBelow(999_000));
+    assertEquals(3, histogram.getCountAtOrBelow(2_000_000));
+  }
+
+  @Test
+  public void testBucketsCoverEveryValue() throws Exception {
+    for (long value : new long[] {0, 1, 63, 64, 65, 127, 128, 1L << 40, Long.MAX_VALUE}) {
+      int index = Histogram.indexOf(value);
+      assertTrue(value + " above its bucket", value <= Histogram.highestValueOf(index));
+      assertTrue(value + " below its bucket", index == 0 || value > Histogram.highestValueOf(index - 1));
+    }
+  }
+
+  @Test
+  public void testConcurrentRecording() throws Exception {
+    Histogram histogram = new Histogram();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread thread = new Thread(() -> {
+        for (int j = 0; j < 10_000; j++)
+          histogram.record(j);
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads)
+      thread.join();
+
+    assertEquals(40_000, histogram.getCount());
+    assertEquals(40_000, histogram.getCountAtOrBelow(Long.MAX_VALUE));
+  }
+}
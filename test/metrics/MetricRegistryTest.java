@@ -0,0 +1,59 @@
+package metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricRegistryTest {
+
+  @Test
+  public void testPrometheusTextFormat() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    registry.counter("requests_total", "Requests.", "route", "/a").add(3);
+    registry.counter("requests_total", "Requests.", "route", "/\"b\"").increment();
+    registry.gauge("connections", "Open connections.", () -> 7);
+
+    assertEquals("# HELP requests_total Requests.\n" +
+      "# TYPE requests_total counter\n" +
+      "requests_total{route=\"/a\"} 3\n" +
+      "requests_total{route=\"/\\\"b\\\"\"} 1\n" +
+      "# HELP connections Open connections.\n" +
+      "# TYPE connections gauge\n" +
+      "connections 7\n", registry.toPrometheusFormat());
+  }
+
+  @Test
+  public void testHistogramBucketsAreCumulativeSeconds() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    Histogram histogram = registry.histogram("duration_seconds", "Duration.", "phase", "write");
+    histogram.record(100_000);
+    histogram.record(3_000_000);
+    histogram.record(20_000_000_000L);
+
+    String text = registry.toPrometheusFormat();
+    assertTrue(text, text.contains("duration_seconds_bucket{phase=\"write\",le=\"5.0E-4\"} 1\n"));
+    assertTrue(text, text.contains("duration_seconds_bucket{phase=\"write\",le=\"0.005\"} 2\n"));
+    assertTrue(text, text.contains("duration_seconds_bucket{phase=\"write\",le=\"10.0\"} 2\n"));
+    assertTrue(text, text.contains("duration_seconds_bucket{phase=\"write\",le=\"+Inf\"} 3\n"));
+    assertTrue(text, text.contains("duration_seconds_count{phase=\"write\"} 3\n"));
+    assertTrue(text, text.contains("duration_seconds_sum{phase=\"write\"} 20.0031\n"));
+  }
+
+  @Test
+  public void testSameSeriesIsReturnedOnce() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    LongAdder counter = registry.counter("requests_total", "Requests.");
+    assertSame(counter, registry.counter("requests_total", "Requests."));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTypeConflictIsRejected() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    registry.counter("requests", "Requests.");
+    registry.histogram("requests", "Requests.");
+  }
+}
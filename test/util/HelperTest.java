@@ -3,7 +3,10 @@ package util;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static util.Helper.combinePaths;
+import static util.Helper.formatHttpDate;
+import static util.Helper.parseHttpDate;
 
 public class HelperTest {
   @Test
@@ -12,4 +15,18 @@ public class HelperTest {
     assertEquals("/test/abc", combinePaths("/test","abc/"));
     assertEquals("test/abc", combinePaths("test","abc"));
   }
+
+  @Test
+  public void testFormatHttpDate_RFC7231_7_1_1_1() throws Exception {
+    assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", formatHttpDate(784111777000L));
+  }
+
+  @Test
+  public void testParseAllHttpDateFormats_RFC2616_3_3_1() throws Exception {
+    assertEquals(Long.valueOf(784111777000L), parseHttpDate("Sun, 06 Nov 1994 08:49:37 GMT"));
+    assertEquals(Long.valueOf(784111777000L), parseHttpDate("Sunday, 06-Nov-94 08:49:37 GMT"));
+    assertEquals(Long.valueOf(784111777000L), parseHttpDate("Sun Nov  6 08:49:37 1994"));
+    assertNull(parseHttpDate("yesterday"));
+    assertNull(parseHttpDate(null));
+  }
 }
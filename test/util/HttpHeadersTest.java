@@ -0,0 +1,85 @@
+package util;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpHeadersTest {
+
+  @Test
+  public void testGetIgnoresCase() throws Exception {
+    HttpHeaders headers = new HttpHeaders();
+    headers.put("X-Custom", "1");
+    headers.put(HttpHeaders.CONTENT_LENGTH, "2");
+
+    assertEquals("1", headers.get("x-custom"));
+    assertEquals("1", headers.get("X-CUSTOM"));
+    assertEquals("2", headers.get("content-length"));
+    assertTrue(headers.containsKey("CONTENT-LENGTH"));
+    assertNull(headers.get("Host"));
+    assertNull(headers.get(null));
+  }
+
+  @Test
+  public void testPutReplacesValueAndKeepsOriginalName() throws Exception {
+    HttpHeaders headers = new HttpHeaders();
+    headers.put("Test", "123");
+
+    assertEquals("123", headers.put("tEST", "456"));
+    assertEquals("456", headers.get("test"));
+    assertEquals(1, headers.size());
+    assertEquals("Test", headers.keySet().iterator().next());
+  }
+
+  @Test
+  public void testInsertionOrderIsKept() throws Exception {
+    HttpHeaders headers = new HttpHeaders();
+    headers.put("Host", "a");
+    headers.put("Accept", "b");
+    headers.put("Connection", "c");
+    headers.put("host", "d");
+
+    assertEquals(asList("Host", "Accept", "Connection"), asList(headers.keySet().toArray()));
+  }
+
+  @Test
+  public void testMultipleValues_RFC7230_3_2_2() throws Exception {
+    HttpHeaders headers = new HttpHeaders();
+    headers.add("Accept", "text/html");
+    headers.add("accept", "text/plain");
+
+    assertEquals("text/html, text/plain", headers.get("Accept"));
+    assertEquals(asList("text/html", "text/plain"), headers.getAll("ACCEPT"));
+    assertEquals(emptyList(), headers.getAll("Host"));
+  }
+
+  @Test
+  public void testRemove() throws Exception {
+    HttpHeaders headers = new HttpHeaders();
+    headers.put("Content-Length", "1");
+    headers.put("Content-Type", "text/html");
+
+    assertEquals("1", headers.remove("content-length"));
+    assertFalse(headers.containsKey("Content-Length"));
+
+    Iterator<Map.Entry<String, String>> entries = headers.entrySet().iterator();
+    entries.next();
+    entries.remove();
+    assertTrue(headers.isEmpty());
+  }
+
+  @Test
+  public void testFold() throws Exception {
+    assertEquals("host", HttpHeaders.fold("Host"));
+    assertEquals("host", HttpHeaders.fold("HOST"));
+    assertEquals("x-a", HttpHeaders.fold("X-A"));
+  }
+}